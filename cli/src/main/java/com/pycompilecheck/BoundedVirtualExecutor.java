@@ -0,0 +1,50 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs every task on its own virtual thread, with at most a fixed number
+ * running at once. {@link #execute} blocks while all permits are taken, so
+ * the directory walk submitting files slows down to the pace of the readers
+ * instead of parking a thread per file.
+ */
+final class BoundedVirtualExecutor implements Executor, AutoCloseable {
+
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+
+    BoundedVirtualExecutor(int concurrency) {
+        this.permits = new Semaphore(concurrency);
+    }
+
+    @Override
+    public void execute(@NotNull Runnable task) {
+        permits.acquireUninterruptibly();
+        try {
+            threads.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for running tasks to finish.
+     */
+    @Override
+    public void close() {
+        threads.close();
+    }
+}
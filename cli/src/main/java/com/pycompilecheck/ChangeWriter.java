@@ -0,0 +1,21 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams the changes of a CLI scan as they are found. {@link #change} is
+ * called from many scanning threads at once; every record is flushed, so
+ * consumers can start on it before the scan ends.
+ */
+interface ChangeWriter extends Closeable {
+
+    void change(@NotNull FileChange change) throws IOException;
+
+    /**
+     * Writes the totals of the finished scan.
+     */
+    void finish(@NotNull ChangeReport report) throws IOException;
+}
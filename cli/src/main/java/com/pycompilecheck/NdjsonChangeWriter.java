@@ -0,0 +1,79 @@
+package com.pycompilecheck;
+
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One JSON object per line: a "change" record per changed file, using the
+ * keys of the analyzer daemon's output, and a "summary" record at the end.
+ * Changed lines are [start, end) pairs of 0-based line numbers.
+ */
+final class NdjsonChangeWriter implements ChangeWriter {
+
+    private final Writer out;
+    // Not synchronized: a contended monitor would pin the virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    NdjsonChangeWriter(@NotNull Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void change(@NotNull FileChange change) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter writer = new JsonWriter(line);
+        writer.beginObject();
+        writer.name("type").value("change");
+        writer.name("file").value(change.getFile());
+        writer.name("has_content_changes").value(change.isContentChanged());
+        writer.name("has_import_changes").value(change.isImportsChanged());
+        writer.name("has_size_changes").value(change.isSizeChanged());
+        writer.name("size_change_info").value(change.getSizeChangeInfo());
+        int[] lines = change.getChangedLines();
+        if (lines != null) {
+            writer.name("changed_lines").beginArray();
+            for (int i = 0; i < lines.length; i += 2) {
+                writer.beginArray().value(lines[i]).value(lines[i + 1]).endArray();
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+        writeLine(line.toString());
+    }
+
+    @Override
+    public void finish(@NotNull ChangeReport report) throws IOException {
+        StringWriter line = new StringWriter();
+        JsonWriter writer = new JsonWriter(line);
+        writer.beginObject();
+        writer.name("type").value("summary");
+        writer.name("files").value(report.getFileCount());
+        writer.name("hashed_files").value(report.getHashedFileCount());
+        writer.name("changes").value(report.getChanges().size());
+        writer.name("duration_ms").value(report.getDurationMillis());
+        writer.name("generation").value(report.getGeneration());
+        writer.endObject();
+        writeLine(line.toString());
+    }
+
+    private void writeLine(@NotNull String line) throws IOException {
+        lock.lock();
+        try {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
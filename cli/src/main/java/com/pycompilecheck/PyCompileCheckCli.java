@@ -0,0 +1,142 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Headless batch scan for CI, on the plugin's {@link ChangeDetectionEngine}.
+ *
+ * <p>The walk runs on the main thread and every Python file is read and
+ * hashed on its own virtual thread, with at most --concurrency files in
+ * flight. Excluded directories are pruned as in the plugin, with extra
+ * --exclude patterns in .gitignore syntax. Changes are written as NDJSON or
+ * SARIF while the scan runs. Like main.py, a run replaces the stored
+ * metadata, and its result is saved for the plugin to show when the
+ * project is opened.</p>
+ *
+ * <p>With --git-index only the files that changed according to .git/index
+ * are scanned, see {@link ChangeDetectionEngine#analyzeGitIndex}, and the
+ * stored metadata of all other files is kept. Their changes are written
+ * when the scan ends.</p>
+ */
+public final class PyCompileCheckCli {
+
+    // The scan is I/O bound, so far more files than cores can be read at once
+    static final int DEFAULT_CONCURRENCY = 64;
+
+    private static final String USAGE =
+        "Usage: pycompilecheck [--format ndjson|sarif] [--concurrency N] [--verify-hashes] [--git-index]"
+        + " [--exclude PATTERN ...] [--output FILE] [project_path]";
+
+    private PyCompileCheckCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String @NotNull [] args) {
+        String format = "ndjson";
+        int concurrency = DEFAULT_CONCURRENCY;
+        boolean verifyHashes = false;
+        boolean gitIndex = false;
+        List<String> excludePatterns = new ArrayList<>();
+        String output = null;
+        String projectPath = ".";
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format":
+                        format = args[++i];
+                        break;
+                    case "--concurrency":
+                        concurrency = Integer.parseInt(args[++i]);
+                        break;
+                    case "--verify-hashes":
+                        verifyHashes = true;
+                        break;
+                    case "--git-index":
+                        gitIndex = true;
+                        break;
+                    case "--exclude":
+                        excludePatterns.add(args[++i]);
+                        break;
+                    case "--output":
+                        output = args[++i];
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException(args[i]);
+                        }
+                        projectPath = args[i];
+                }
+            }
+            if (!format.equals("ndjson") && !format.equals("sarif") || concurrency < 1) {
+                throw new IllegalArgumentException(format);
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        Path root = Paths.get(projectPath).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            System.err.println("Error: Project path does not exist: " + projectPath);
+            return 1;
+        }
+
+        // The engine's own pool is not used; files go to the virtual threads
+        ChangeDetectionEngine engine = new ChangeDetectionEngine(root, 1);
+        engine.setVerifyHashes(verifyHashes);
+        engine.setExcludePatterns(excludePatterns);
+        try (ChangeWriter writer = openWriter(format, output, root);
+             BoundedVirtualExecutor executor = new BoundedVirtualExecutor(concurrency)) {
+            ChangeReport report;
+            if (gitIndex) {
+                report = engine.analyzeGitIndex(() -> false);
+                for (FileChange change : report.getChanges()) {
+                    writer.change(change);
+                }
+            } else {
+                report = engine.analyzeProject(executor, change -> {
+                    try {
+                        writer.change(change);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, () -> false);
+            }
+            writer.finish(report);
+            new ResultStore(root).save(PyCompileCheckResult.fromReport(report, root.toString()));
+            return 0;
+        } catch (IOException | UncheckedIOException | CompletionException e) {
+            System.err.println("PyCompileCheck scan failed: " + e.getMessage());
+            return 1;
+        } finally {
+            // Writes metadata.json for main.py and saves the content snapshots
+            engine.shutdown();
+        }
+    }
+
+    private static @NotNull ChangeWriter openWriter(@NotNull String format, @Nullable String output,
+                                                    @NotNull Path root) throws IOException {
+        Writer out = output != null
+            ? Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)
+            : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        return format.equals("sarif") ? new SarifChangeWriter(out, root) : new NdjsonChangeWriter(out);
+    }
+}
@@ -0,0 +1,162 @@
+package com.pycompilecheck;
+
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A SARIF 2.1.0 log with one run. The document header is written up front
+ * and every result is flushed as soon as it is found, so the log is only
+ * complete after {@link #finish}, but its results can be read while the
+ * scan is still going.
+ */
+final class SarifChangeWriter implements ChangeWriter {
+
+    static final String CONTENT_RULE = "content-changed";
+    static final String IMPORTS_RULE = "imports-changed";
+    static final String SIZE_RULE = "size-changed";
+
+    private static final String ROOT_ID = "SRCROOT";
+
+    private final Writer out;
+    private final JsonWriter writer;
+    // Not synchronized: a contended monitor would pin the virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    SarifChangeWriter(@NotNull Writer out, @NotNull Path projectRoot) throws IOException {
+        this.out = out;
+        this.writer = new JsonWriter(out);
+
+        writer.beginObject();
+        writer.name("$schema").value("https://json.schemastore.org/sarif-2.1.0.json");
+        writer.name("version").value("2.1.0");
+        writer.name("runs").beginArray();
+        writer.beginObject();
+
+        writer.name("tool").beginObject();
+        writer.name("driver").beginObject();
+        writer.name("name").value("PyCompileCheck");
+        writer.name("informationUri").value("https://github.com/CpBruceMeena/PyCompileCheck");
+        writer.name("rules").beginArray();
+        writeRule(CONTENT_RULE, "Content modified since the last analysis", "warning");
+        writeRule(IMPORTS_RULE, "Imports modified since the last analysis", "warning");
+        writeRule(SIZE_RULE, "File size changed since the last analysis", "note");
+        writer.endArray();
+        writer.endObject();
+        writer.endObject();
+
+        writer.name("originalUriBaseIds").beginObject();
+        writer.name(ROOT_ID).beginObject();
+        writer.name("uri").value(projectRoot.toAbsolutePath().toUri().toString());
+        writer.endObject();
+        writer.endObject();
+
+        writer.name("results").beginArray();
+        out.flush();
+    }
+
+    private void writeRule(@NotNull String id, @NotNull String description, @NotNull String level) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(id);
+        writer.name("shortDescription").beginObject().name("text").value(description).endObject();
+        writer.name("defaultConfiguration").beginObject().name("level").value(level).endObject();
+        writer.endObject();
+    }
+
+    @Override
+    public void change(@NotNull FileChange change) throws IOException {
+        String uri = change.getFile().replace('\\', '/');
+        lock.lock();
+        try {
+            if (change.isContentChanged()) {
+                int[] lines = change.getChangedLines();
+                if (lines != null && lines.length > 0) {
+                    // One result per changed range, like the inspection's underlines
+                    for (int i = 0; i < lines.length; i += 2) {
+                        String message = lines[i] == lines[i + 1]
+                            ? "Lines removed - PyCompileCheck detected changes"
+                            : "Content modified - PyCompileCheck detected changes";
+                        writeResult(CONTENT_RULE, "warning", message, uri, lines[i], lines[i + 1]);
+                    }
+                } else {
+                    writeResult(CONTENT_RULE, "warning", "Content modified - PyCompileCheck detected changes", uri, -1, -1);
+                }
+            }
+            if (change.isImportsChanged()) {
+                writeResult(IMPORTS_RULE, "warning", "Imports modified - PyCompileCheck detected import changes", uri, -1, -1);
+            }
+            if (change.isSizeChanged()) {
+                writeResult(SIZE_RULE, "note", "File size changed: " + change.getSizeChangeInfo(), uri, -1, -1);
+            }
+            out.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes one result. Lines are a 0-based [start, end) range, or -1 for
+     * the whole file; an empty range marks the line after deleted lines.
+     */
+    private void writeResult(@NotNull String ruleId, @NotNull String level, @NotNull String message,
+                             @NotNull String uri, int startLine, int endLine) throws IOException {
+        writer.beginObject();
+        writer.name("ruleId").value(ruleId);
+        writer.name("level").value(level);
+        writer.name("message").beginObject().name("text").value(message).endObject();
+        writer.name("locations").beginArray();
+        writer.beginObject();
+        writer.name("physicalLocation").beginObject();
+        writer.name("artifactLocation").beginObject();
+        writer.name("uri").value(uri);
+        writer.name("uriBaseId").value(ROOT_ID);
+        writer.endObject();
+        if (startLine >= 0) {
+            // SARIF lines are 1-based and inclusive
+            writer.name("region").beginObject();
+            writer.name("startLine").value(startLine + 1);
+            writer.name("endLine").value(Math.max(startLine + 1, endLine));
+            writer.endObject();
+        }
+        writer.endObject();
+        writer.endObject();
+        writer.endArray();
+        writer.endObject();
+    }
+
+    @Override
+    public void finish(@NotNull ChangeReport report) throws IOException {
+        lock.lock();
+        try {
+            writer.endArray();
+            writer.name("invocations").beginArray();
+            writer.beginObject();
+            writer.name("executionSuccessful").value(true);
+            writer.endObject();
+            writer.endArray();
+            writer.name("properties").beginObject();
+            writer.name("files").value(report.getFileCount());
+            writer.name("hashedFiles").value(report.getHashedFileCount());
+            writer.name("changes").value(report.getChanges().size());
+            writer.name("durationMs").value(report.getDurationMillis());
+            writer.endObject();
+            writer.endObject();
+            writer.endArray();
+            writer.endObject();
+            out.write('\n');
+            out.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // JsonWriter.close() rejects the unfinished document of a failed scan
+        out.close();
+    }
+}
@@ -1,5 +1,4 @@
 #!/usr/bin/env python3
-# TODO: PyCompileCheck detected changes: content modified, size changed from 5288 to 5411 bytes
 """
 Main entry point for PyCompileCheck.
 Handles project analysis and metadata management.
@@ -8,18 +7,305 @@ Handles project analysis and metadata management.
 import os
 import sys
 import json
+import mmap
+import re
 import hashlib
 from datetime import datetime
 from pathlib import Path
 from typing import Dict, List, Optional, Set, Tuple
 
+try:
+    import mmh3
+except ImportError:
+    mmh3 = None
+
+SHA256 = "sha256"
+MURMUR3_128 = "murmur3_128"
+# Non-cryptographic, so much cheaper than SHA-256; the pure Python fallback
+# is only used to compare against entries written by the Java engine
+FAST_HASH_ALGORITHM = MURMUR3_128 if mmh3 is not None else SHA256
+# Files modified this close to (or after) their last analysis may have
+# changed again within the same timestamp tick, so they are hashed even if
+# their stat data matches, like git's racy-clean check. Two seconds covers
+# the coarsest common mtime resolution (FAT).
+RACY_WINDOW_SECONDS = 2.0
+# Larger files are memory-mapped instead of read into a buffer
+MAP_THRESHOLD = 64 * 1024
+# A line, ended by \n, \r or \r\n, that starts with "import " or "from "
+# after whitespace
+IMPORT_LINE = re.compile(rb'(?:^|(?<=[\r\n]))[ \t\x0b\x0c\x1c-\x1f]*((?:import |from )[^\r\n]*)')
+# Project-level exclude patterns, in .gitignore syntax
+IGNORE_FILE = ".pycompilecheckignore"
+# Directories holding this file are virtualenvs, whatever their name
+VENV_MARKER = "pyvenv.cfg"
+# Same defaults as the Java engine's ExcludeMatcher
+DEFAULT_EXCLUDES = [
+    ".git/", ".hg/", ".svn/", ".pycompilecheck/",
+    ".venv/", "venv/", "site-packages/", "node_modules/", "__pycache__/",
+    ".tox/", ".nox/", ".mypy_cache/", ".pytest_cache/", ".eggs/", "*.egg-info/",
+    "build/", "dist/",
+]
+
+_MASK64 = 0xFFFFFFFFFFFFFFFF
+
+
+def _rotl64(x: int, r: int) -> int:
+    return ((x << r) | (x >> (64 - r))) & _MASK64
+
+
+def _fmix64(k: int) -> int:
+    k ^= k >> 33
+    k = (k * 0xFF51AFD7ED558CCD) & _MASK64
+    k ^= k >> 33
+    k = (k * 0xC4CEB9FE1A85EC53) & _MASK64
+    k ^= k >> 33
+    return k
+
+
+def _murmur3_x64_128(data) -> bytes:
+    """MurmurHash3 x64 128-bit with seed 0, byte-compatible with mmh3.hash_bytes."""
+    c1, c2 = 0x87C37B91114253D5, 0x4CF5AD432745937F
+    view = memoryview(data).cast('B')
+    length = len(view)
+    h1 = h2 = 0
+    
+    blocks = length // 16
+    for i in range(blocks):
+        k1 = int.from_bytes(view[i * 16:i * 16 + 8], 'little')
+        k2 = int.from_bytes(view[i * 16 + 8:i * 16 + 16], 'little')
+        
+        k1 = (_rotl64((k1 * c1) & _MASK64, 31) * c2) & _MASK64
+        h1 ^= k1
+        h1 = (_rotl64(h1, 27) + h2) & _MASK64
+        h1 = (h1 * 5 + 0x52DCE729) & _MASK64
+        
+        k2 = (_rotl64((k2 * c2) & _MASK64, 33) * c1) & _MASK64
+        h2 ^= k2
+        h2 = (_rotl64(h2, 31) + h1) & _MASK64
+        h2 = (h2 * 5 + 0x38495AB5) & _MASK64
+    
+    tail = view[blocks * 16:]
+    if len(tail) > 8:
+        k2 = int.from_bytes(tail[8:], 'little')
+        h2 ^= (_rotl64((k2 * c2) & _MASK64, 33) * c1) & _MASK64
+    if len(tail) > 0:
+        k1 = int.from_bytes(tail[:8], 'little')
+        h1 ^= (_rotl64((k1 * c1) & _MASK64, 31) * c2) & _MASK64
+    
+    h1 ^= length
+    h2 ^= length
+    h1 = (h1 + h2) & _MASK64
+    h2 = (h2 + h1) & _MASK64
+    h1 = _fmix64(h1)
+    h2 = _fmix64(h2)
+    h1 = (h1 + h2) & _MASK64
+    h2 = (h2 + h1) & _MASK64
+    return h1.to_bytes(8, 'little') + h2.to_bytes(8, 'little')
+
+
+def hash_content(content, algorithm: str) -> str:
+    """Hash file content with one of the supported algorithms, as hex."""
+    if algorithm == SHA256:
+        return hashlib.sha256(content).hexdigest()
+    if algorithm == MURMUR3_128:
+        if mmh3 is not None:
+            return mmh3.hash_bytes(content).hex()
+        return _murmur3_x64_128(content).hex()
+    raise ValueError(f"Unsupported hash algorithm: {algorithm}")
+
+
+def _glob_to_regex(glob: str) -> str:
+    """Translate a .gitignore glob to a regex, exactly like the Java ExcludeMatcher."""
+    regex = []
+    i = 0
+    length = len(glob)
+    while i < length:
+        c = glob[i]
+        if c == '*':
+            at_segment_start = i == 0 or glob[i - 1] == '/'
+            if i + 1 < length and glob[i + 1] == '*' and at_segment_start:
+                if i + 2 == length:
+                    regex.append('.*')
+                    i += 2
+                    continue
+                if glob[i + 2] == '/':
+                    regex.append('(?:.*/)?')
+                    i += 3
+                    continue
+            regex.append('[^/]*')
+        elif c == '?':
+            regex.append('[^/]')
+        elif c == '[':
+            # A ']' right after the opening or the negation is part of the class
+            negated = i + 1 < length and glob[i + 1] in '!^'
+            start = i + 2 if negated else i + 1
+            end = glob.find(']', start + 1)
+            if end < 0:
+                regex.append('\\[')
+            else:
+                # Like git, a negated class doesn't match the separator; escaped so
+                # both regex dialects read '[' and '&' in it literally
+                body = ''.join('\\' + b if b in '\\[]&' else b for b in glob[start:end])
+                regex.append(('[^/' if negated else '[') + body + ']')
+                i = end
+        elif c == '\\' and i + 1 < length:
+            i += 1
+            regex.append(_regex_literal(glob[i]))
+        else:
+            regex.append(_regex_literal(c))
+        i += 1
+    return ''.join(regex)
+
+
+def _regex_literal(c: str) -> str:
+    return '\\' + c if c in '.^$+{}()|[]\\*?' else c
+
+
+class _ExcludeRule:
+    """One compiled .gitignore line."""
+    
+    def __init__(self, base: str, negated: bool, directory_only: bool, anchored: bool, text: str):
+        self.base_prefix = base + '/' if base else ''
+        self.negated = negated
+        self.directory_only = directory_only
+        # Patterns without a slash match the name at any depth
+        self.anchored = anchored
+        if any(c in text for c in '*?[\\'):
+            self.literal = None
+            self.pattern = re.compile(_glob_to_regex(text))
+        else:
+            self.literal = text
+            self.pattern = None
+    
+    @staticmethod
+    def parse(line: str, base: str) -> Optional['_ExcludeRule']:
+        text = line
+        while text.endswith(' ') and not text.endswith('\\ '):
+            text = text[:-1]
+        if not text or text.startswith('#'):
+            return None
+        negated = text.startswith('!')
+        if negated or text.startswith('\\!') or text.startswith('\\#'):
+            text = text[1:]
+        directory_only = text.endswith('/')
+        if directory_only:
+            text = text[:-1]
+        anchored = '/' in text
+        if text.startswith('/'):
+            text = text[1:]
+        if not text:
+            return None
+        return _ExcludeRule(base, negated, directory_only, anchored, text)
+    
+    def matches(self, path: str, name: str, directory: bool) -> bool:
+        if self.directory_only and not directory:
+            return False
+        if not path.startswith(self.base_prefix):
+            return False
+        subject = path[len(self.base_prefix):] if self.anchored else name
+        if self.literal is not None:
+            return self.literal == subject
+        return self.pattern.fullmatch(subject) is not None
+
+
+class ExcludeMatcher:
+    """
+    Decides which directories and files a project walk skips, so virtualenvs,
+    VCS metadata and build output are pruned before os.walk descends into them.
+    
+    Rules use .gitignore syntax and the last matching rule wins. They come from
+    DEFAULT_EXCLUDES, .git/info/exclude and the .gitignore files met during the
+    walk, and are overridden by .pycompilecheckignore and the patterns given on
+    the command line, so `!build/` there brings a first-party build package
+    back. Mirrors the Java engine's ExcludeMatcher, so both see the same files.
+    """
+    
+    def __init__(self, rules: List[_ExcludeRule], overrides: List[_ExcludeRule]):
+        self.rules = rules
+        self.overrides = overrides
+    
+    @staticmethod
+    def load(project_path: Path, extra_patterns: List[str]) -> 'ExcludeMatcher':
+        rules: List[_ExcludeRule] = []
+        ExcludeMatcher._add_rules(rules, DEFAULT_EXCLUDES, '')
+        ExcludeMatcher._add_rules(rules, ExcludeMatcher._read_lines(project_path / '.git' / 'info' / 'exclude'), '')
+        ExcludeMatcher._add_rules(rules, ExcludeMatcher._read_lines(project_path / '.gitignore'), '')
+        overrides: List[_ExcludeRule] = []
+        ExcludeMatcher._add_rules(overrides, ExcludeMatcher._read_lines(project_path / IGNORE_FILE), '')
+        ExcludeMatcher._add_rules(overrides, extra_patterns, '')
+        return ExcludeMatcher(rules, overrides)
+    
+    def with_gitignore(self, dir_path: Path, rel_dir: str) -> 'ExcludeMatcher':
+        """Return the matcher for the entries of a directory, adding its .gitignore."""
+        lines = self._read_lines(dir_path / '.gitignore')
+        if not lines:
+            return self
+        nested = list(self.rules)
+        self._add_rules(nested, lines, rel_dir.replace(os.sep, '/'))
+        return ExcludeMatcher(nested, self.overrides)
+    
+    def is_excluded(self, rel_path: str, directory: bool) -> bool:
+        """Check a path relative to the project root; its parents are assumed included."""
+        path = rel_path.replace(os.sep, '/')
+        name = path.rsplit('/', 1)[-1]
+        for rules in (self.overrides, self.rules):
+            for rule in reversed(rules):
+                if rule.matches(path, name, directory):
+                    return not rule.negated
+        return False
+    
+    def for_parent(self, project_path: Path, rel_path: str) -> Optional['ExcludeMatcher']:
+        """
+        Return the matcher for the entries of a path's parent directory, or
+        None if a directory above it is excluded or a virtualenv.
+        """
+        segments = rel_path.replace(os.sep, '/').split('/')
+        matcher = self
+        dir_path = project_path
+        prefix = ''
+        for segment in segments[:-1]:
+            prefix = prefix + '/' + segment if prefix else segment
+            dir_path = dir_path / segment
+            if matcher.is_excluded(prefix, True) or (dir_path / VENV_MARKER).exists():
+                return None
+            matcher = matcher.with_gitignore(dir_path, prefix)
+        return matcher
+    
+    @staticmethod
+    def _add_rules(rules: List[_ExcludeRule], lines: List[str], base: str) -> None:
+        for line in lines:
+            rule = _ExcludeRule.parse(line, base)
+            if rule is not None:
+                rules.append(rule)
+    
+    @staticmethod
+    def _read_lines(path: Path) -> List[str]:
+        try:
+            with open(path, 'r', encoding='utf-8') as f:
+                return f.read().splitlines()
+        except (OSError, UnicodeDecodeError):
+            # Missing or unreadable ignore files add no rules
+            return []
+
+
 class ProjectAnalyzer:
-    def __init__(self, project_path: str):
+    def __init__(self, project_path: str, verify_hashes: bool = False,
+                 exclude_patterns: Optional[List[str]] = None, write_comments: bool = True):
         self.project_path = Path(project_path)
+        # Re-hash every file with SHA-256 instead of trusting stat data
+        self.verify_hashes = verify_hashes
+        # Extra .gitignore-style patterns on top of the defaults and ignore files
+        self.exclude_patterns = exclude_patterns or []
+        # Off: changes are only kept in self.changes and never written into sources
+        self.write_comments = write_comments
         self.metadata_dir = self.project_path / ".pycompilecheck"
         self.metadata_file = self.metadata_dir / "metadata.json"
         self.current_metadata: Dict[str, Dict] = {}
         self.previous_metadata: Dict[str, Dict] = {}
+        # Changes detected by the last run, as daemon change records by relative path
+        self.changes: Dict[str, Dict] = {}
+        # Sources the last run rewrote, with the stat data they were left with
+        self.written_files: List[Dict] = []
         
     def setup(self) -> None:
         """Initialize the metadata directory and files."""
@@ -28,71 +314,230 @@ class ProjectAnalyzer:
             with open(self.metadata_file, 'r') as f:
                 self.previous_metadata = json.load(f)
     
-    def calculate_file_hash(self, file_path: Path) -> str:
-        """Calculate SHA-256 hash of a file."""
-        sha256_hash = hashlib.sha256()
+    def calculate_file_hash(self, file_path: Path, algorithm: str = SHA256) -> str:
+        """Calculate the hash of a file, SHA-256 unless another algorithm is given."""
         with open(file_path, "rb") as f:
-            for byte_block in iter(lambda: f.read(4096), b""):
-                sha256_hash.update(byte_block)
-        return sha256_hash.hexdigest()
+            content = self._read_content(f)
+            try:
+                return hash_content(content, algorithm)
+            finally:
+                if isinstance(content, mmap.mmap):
+                    content.close()
     
-    def analyze_file(self, file_path: Path) -> Dict:
-        """Analyze a single Python file and return its metadata."""
+    def analyze_file(self, file_path: Path, previous: Optional[Dict] = None) -> Dict:
+        """
+        Analyze a single Python file and return its metadata.
+        
+        If the previous metadata still matches the file's mtime, size and
+        inode, and the file was not modified around the time it was last
+        analyzed, the previous entry is returned without reading the file.
+        """
         stats = file_path.stat()
+        if previous is not None and not self.verify_hashes and self._is_stat_clean(previous, stats):
+            return previous
+        
+        algorithm = SHA256 if self.verify_hashes else FAST_HASH_ALGORITHM
+        with open(file_path, "rb") as f:
+            content = self._read_content(f)
+            try:
+                file_hash = hash_content(content, algorithm)
+                imports = self._detect_imports(content, file_path)
+            finally:
+                if isinstance(content, mmap.mmap):
+                    content.close()
+        
         return {
             "last_modified": stats.st_mtime,
             "size": stats.st_size,
-            "hash": self.calculate_file_hash(file_path),
-            "imports": self._detect_imports(file_path),
+            "inode": stats.st_ino,
+            "hash": file_hash,
+            "hash_algorithm": algorithm,
+            "imports": imports,
             "last_analyzed": datetime.now().isoformat()
         }
     
-    def _detect_imports(self, file_path: Path) -> List[str]:
-        """Detect imports in a Python file."""
-        imports = []
+    @staticmethod
+    def _read_content(f):
+        """Read a whole file in one call, or map it if it is large."""
+        if os.fstat(f.fileno()).st_size >= MAP_THRESHOLD:
+            return mmap.mmap(f.fileno(), 0, access=mmap.ACCESS_READ)
+        return f.read()
+    
+    @staticmethod
+    def _is_stat_clean(previous: Dict, stats: os.stat_result) -> bool:
+        """Check whether stored metadata can be trusted without reading the file."""
+        if not previous.get("hash") or previous.get("hash_algorithm", SHA256) not in (SHA256, MURMUR3_128):
+            return False
+        if previous.get("size") != stats.st_size or previous.get("last_modified") != stats.st_mtime:
+            return False
+        # Inode 0 means unknown, e.g. written on a platform without inodes
+        inode = previous.get("inode", 0)
+        if inode and stats.st_ino and inode != stats.st_ino:
+            return False
         try:
-            with open(file_path, 'r', encoding='utf-8') as f:
-                for line in f:
-                    line = line.strip()
-                    if line.startswith(('import ', 'from ')):
-                        imports.append(line)
-        except Exception as e:
-            print(f"Error reading imports from {file_path}: {e}")
+            analyzed = datetime.fromisoformat(previous["last_analyzed"]).timestamp()
+        except (KeyError, TypeError, ValueError):
+            return False
+        return stats.st_mtime + RACY_WINDOW_SECONDS < analyzed
+    
+    def _detect_imports(self, content, file_path: Path) -> List[str]:
+        """
+        Detect imports in the content of a Python file.
+        
+        The regex runs over the bytes or the mmap itself, so only the import
+        lines are copied and decoded. Like the Java engine, reading stops at
+        the first import line that is not valid UTF-8.
+        """
+        imports = []
+        for match in IMPORT_LINE.finditer(content):
+            try:
+                imports.append(match.group(1).decode('utf-8').strip())
+            except UnicodeDecodeError as e:
+                print(f"Error reading imports from {file_path}: {e}")
+                break
         return imports
     
     def analyze_project(self) -> None:
         """Analyze the entire project and detect changes."""
-        for root, _, files in os.walk(self.project_path):
+        self._start_run()
+        excludes = ExcludeMatcher.load(self.project_path, self.exclude_patterns)
+        for file_path, rel_path in self._walk(self.project_path, self.project_path, excludes):
+            # Skip metadata directory
+            if '.pycompilecheck' in rel_path:
+                continue
+            
+            self._analyze_and_compare(file_path, rel_path)
+    
+    @staticmethod
+    def _walk(top: Path, root: Path, excludes: ExcludeMatcher):
+        """
+        Yield (path, relative path) for the Python files below top that are not
+        excluded, pruning excluded directories and virtualenvs before os.walk
+        descends into them.
+        """
+        matchers = {str(top): excludes}
+        for dir_root, dirs, files in os.walk(top):
+            matcher = matchers.pop(dir_root)
+            dir_path = Path(dir_root)
+            rel_dir = str(dir_path.relative_to(root))
+            if rel_dir != '.':
+                if VENV_MARKER in files:
+                    dirs[:] = []
+                    continue
+                if '.gitignore' in files:
+                    # The root .gitignore is part of every matcher already
+                    matcher = matcher.with_gitignore(dir_path, rel_dir)
+            
+            dirs[:] = [d for d in dirs
+                       if not matcher.is_excluded(str((dir_path / d).relative_to(root)), True)]
+            for d in dirs:
+                matchers[os.path.join(dir_root, d)] = matcher
+            
             for file in files:
                 if file.endswith('.py'):
-                    file_path = Path(root) / file
-                    rel_path = str(file_path.relative_to(self.project_path))
-                    
-                    # Skip metadata directory
-                    if '.pycompilecheck' in rel_path:
-                        continue
-                    
-                    # Analyze file
-                    self.current_metadata[rel_path] = self.analyze_file(file_path)
-                    
-                    # Check for changes
-                    if rel_path in self.previous_metadata:
-                        prev = self.previous_metadata[rel_path]
-                        curr = self.current_metadata[rel_path]
-                        
-                        changes = []
-                        if prev['hash'] != curr['hash']:
-                            changes.append("content modified")
-                        if prev['size'] != curr['size']:
-                            changes.append(f"size changed from {prev['size']} to {curr['size']} bytes")
-                        if prev['imports'] != curr['imports']:
-                            changes.append("imports modified")
-                        
-                        if changes:
-                            self.add_todo_comment(file_path, changes)
-    
-    def add_todo_comment(self, file_path: Path, changes: List[str]) -> None:
-        """Add a TODO comment to the file indicating what changed."""
+                    file_path = dir_path / file
+                    rel_path = str(file_path.relative_to(root))
+                    if not matcher.is_excluded(rel_path, False):
+                        yield file_path, rel_path
+    
+    def analyze_paths(self, paths: List[str]) -> None:
+        """
+        Re-analyze only the given paths and update their metadata entries.
+        
+        Entries for all other files are carried over from the previous
+        metadata. Paths that no longer exist are removed together with
+        everything below them, and directories are scanned recursively.
+        """
+        self._start_run()
+        self.current_metadata = dict(self.previous_metadata)
+        root = self.project_path.resolve()
+        excludes = ExcludeMatcher.load(root, self.exclude_patterns)
+        
+        for path in paths:
+            file_path = (self.project_path / path).resolve()
+            try:
+                rel_path = str(file_path.relative_to(root))
+            except ValueError:
+                # Outside the project
+                continue
+            if rel_path == '.' or '.pycompilecheck' in rel_path:
+                continue
+            
+            if not file_path.exists():
+                prefix = rel_path + os.sep
+                for key in [k for k in self.current_metadata if k == rel_path or k.startswith(prefix)]:
+                    del self.current_metadata[key]
+                continue
+            
+            directory = file_path.is_dir()
+            parent_excludes = excludes.for_parent(root, rel_path)
+            if parent_excludes is None or parent_excludes.is_excluded(rel_path, directory):
+                continue
+            
+            if directory:
+                for child, child_rel_path in self._walk(file_path, root, parent_excludes):
+                    self._analyze_and_compare(child, child_rel_path)
+            elif file_path.is_file() and rel_path.endswith('.py'):
+                self._analyze_and_compare(file_path, rel_path)
+    
+    def _start_run(self) -> None:
+        """Forget the changes and writes of the previous run."""
+        self.changes = {}
+        self.written_files = []
+    
+    def _analyze_and_compare(self, file_path: Path, rel_path: str) -> None:
+        """Analyze one file and compare it with its previous metadata."""
+        prev = self.previous_metadata.get(rel_path)
+        
+        # Analyze file, skipping the read if its stat data is unchanged
+        curr = self.analyze_file(file_path, prev)
+        self.current_metadata[rel_path] = curr
+        
+        # Check for changes
+        if prev is not None and curr is not prev:
+            content_changed = self._content_changed(file_path, prev, curr)
+            size_info = ""
+            changes = []
+            if content_changed:
+                changes.append("content modified")
+            if prev['size'] != curr['size']:
+                size_info = f"from {prev['size']} to {curr['size']} bytes"
+                changes.append(f"size changed {size_info}")
+            if prev['imports'] != curr['imports']:
+                changes.append("imports modified")
+            
+            if changes:
+                self.changes[rel_path] = {
+                    "file": rel_path,
+                    "has_content_changes": content_changed,
+                    "has_import_changes": prev['imports'] != curr['imports'],
+                    "has_size_changes": bool(size_info),
+                    "size_change_info": size_info,
+                    "description": ', '.join(changes),
+                }
+                if self.write_comments and self.add_todo_comment(file_path, changes):
+                    # Record the file as it was left, so the comment itself is
+                    # not reported as a change by the next run
+                    curr = self.analyze_file(file_path)
+                    self.current_metadata[rel_path] = curr
+                    self.written_files.append({
+                        "file": rel_path,
+                        "size": curr['size'],
+                        "mtime_ms": file_path.stat().st_mtime_ns // 1_000_000,
+                    })
+    
+    def _content_changed(self, file_path: Path, prev: Dict, curr: Dict) -> bool:
+        """Compare content hashes, re-hashing if the previous entry used another algorithm."""
+        prev_algorithm = prev.get("hash_algorithm", SHA256)
+        if prev_algorithm == curr["hash_algorithm"]:
+            return prev['hash'] != curr['hash']
+        try:
+            return self.calculate_file_hash(file_path, prev_algorithm) != prev['hash']
+        except (OSError, ValueError):
+            return True
+    
+    def add_todo_comment(self, file_path: Path, changes: List[str]) -> bool:
+        """Add a TODO comment to the file indicating what changed, returning whether it was written."""
         try:
             with open(file_path, 'r', encoding='utf-8') as f:
                 lines = f.readlines()
@@ -113,29 +558,61 @@ class ProjectAnalyzer:
             # Write back to file
             with open(file_path, 'w', encoding='utf-8') as f:
                 f.writelines(lines)
+            return True
                 
         except Exception as e:
             print(f"Error adding TODO comment to {file_path}: {e}")
+            return False
     
     def save_metadata(self) -> None:
         """Save the current metadata to file."""
-        with open(self.metadata_file, 'w') as f:
+        # Write to a temporary file first so an analysis killed mid-write
+        # never leaves a truncated metadata.json behind
+        tmp_file = self.metadata_file.with_suffix('.json.tmp')
+        with open(tmp_file, 'w') as f:
             json.dump(self.current_metadata, f, indent=2)
+        os.replace(tmp_file, self.metadata_file)
 
 def main():
+    args = sys.argv[1:]
+    usage = "Usage: python main.py [--verify-hashes] [--no-write] [--exclude PATTERN ...] [project_path]"
+    # Opt-in full SHA-256 pass that ignores stat data
+    verify_hashes = '--verify-hashes' in args
+    if verify_hashes:
+        args.remove('--verify-hashes')
+    
+    # Report changes without adding TODO comments to the changed files
+    write_comments = '--no-write' not in args
+    if not write_comments:
+        args.remove('--no-write')
+    
+    # Extra exclude patterns, in .gitignore syntax
+    exclude_patterns = []
+    while '--exclude' in args:
+        index = args.index('--exclude')
+        if index + 1 >= len(args):
+            print(usage)
+            sys.exit(1)
+        exclude_patterns.append(args[index + 1])
+        del args[index:index + 2]
+    
     # If no argument is given, use current directory
-    if len(sys.argv) == 1:
+    if len(args) == 0:
         project_path = '.'
-    elif len(sys.argv) == 2:
-        project_path = sys.argv[1]
+    elif len(args) == 1:
+        project_path = args[0]
     else:
-        print("Usage: python main.py [project_path]")
+        print(usage)
         sys.exit(1)
     
-    analyzer = ProjectAnalyzer(project_path)
+    analyzer = ProjectAnalyzer(project_path, verify_hashes, exclude_patterns, write_comments)
     analyzer.setup()
     analyzer.analyze_project()
     analyzer.save_metadata()
+    
+    if not write_comments:
+        for change in analyzer.changes.values():
+            print(f"{change['file']}: PyCompileCheck detected changes: {change['description']}")
 
 if __name__ == "__main__":
     main() 
\ No newline at end of file
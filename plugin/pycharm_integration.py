@@ -38,6 +38,11 @@ except ImportError:
 def main():
     """Main entry point for PyCharm integration."""
     
+    # Long-lived mode used by the Java plugin
+    if len(sys.argv) > 1 and sys.argv[1] == "--daemon":
+        run_daemon()
+        return
+    
     # Get project path from command line arguments
     if len(sys.argv) > 1:
         project_path = sys.argv[1]
@@ -83,32 +88,9 @@ def generate_structured_output(project_path):
         with open(metadata_file, 'r') as f:
             metadata = json.load(f)
         
-        # Generate change information for each file
-        changes = []
-        for file_path, file_data in metadata.items():
-            change_info = {
-                "file": file_path,
-                "has_content_changes": False,
-                "has_import_changes": False,
-                "has_size_changes": False,
-                "size_change_info": "",
-                "last_modified": file_data.get("last_modified", 0),
-                "size": file_data.get("size", 0)
-            }
-            
-            # Check for changes (this is simplified - you can enhance based on your logic)
-            # For now, we'll mark all files as having potential changes
-            change_info["has_content_changes"] = True
-            
-            changes.append(change_info)
-        
-        # Output structured data for Java plugin
-        output_data = {
-            "status": "success",
-            "project_path": project_path,
-            "changes": changes,
-            "timestamp": os.path.getmtime(metadata_file)
-        }
+        output_data = build_structured_output(
+            project_path, metadata, os.path.getmtime(metadata_file)
+        )
         
         # Print structured output that Java can parse
         print("PYCOMPILECHECK_OUTPUT_START")
@@ -119,5 +101,126 @@ def generate_structured_output(project_path):
         print(f"Error generating structured output: {e}")
 
 
+def build_structured_output(project_path, metadata, timestamp, detected=None):
+    """
+    Build the structured output data for the given metadata.
+    
+    When the analyzer's detected changes are given, exactly those are
+    reported; otherwise every file in the metadata is.
+    """
+    if detected is not None:
+        return {
+            "status": "success",
+            "project_path": project_path,
+            "changes": list(detected),
+            "timestamp": timestamp
+        }
+    
+    # Generate change information for each file
+    changes = []
+    for file_path, file_data in metadata.items():
+        change_info = {
+            "file": file_path,
+            "has_content_changes": False,
+            "has_import_changes": False,
+            "has_size_changes": False,
+            "size_change_info": "",
+            "last_modified": file_data.get("last_modified", 0),
+            "size": file_data.get("size", 0)
+        }
+        
+        # Check for changes (this is simplified - you can enhance based on your logic)
+        # For now, we'll mark all files as having potential changes
+        change_info["has_content_changes"] = True
+        
+        changes.append(change_info)
+    
+    # Output structured data for Java plugin
+    return {
+        "status": "success",
+        "project_path": project_path,
+        "changes": changes,
+        "timestamp": timestamp
+    }
+
+
+def run_daemon():
+    """
+    Serve analysis requests over stdin/stdout, one JSON object per line.
+    
+    Requests look like {"id": 1, "command": "analyze", "project_path": "..."}.
+    An optional "paths" list restricts the analysis to those files.
+    Changes are only reported, unless "write_comments" is true; then TODO
+    comments are added to the changed files and the response lists them
+    under "written_files", so the plugin can ignore its own writes.
+    Every request gets exactly one response line carrying the same id.
+    The interpreter, imports and per-project metadata stay loaded between
+    requests, so only the first request pays the startup cost.
+    """
+    from main import ProjectAnalyzer
+    
+    # Anything the analyzer prints must not end up in the protocol stream
+    protocol_out = sys.stdout
+    sys.stdout = sys.stderr
+    
+    analyzers = {}
+    
+    def respond(response):
+        protocol_out.write(json.dumps(response) + "\n")
+        protocol_out.flush()
+    
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        
+        request_id = None
+        try:
+            request = json.loads(line)
+            request_id = request.get("id")
+            command = request.get("command")
+            
+            if command == "ping":
+                respond({"id": request_id, "status": "ok"})
+            elif command == "shutdown":
+                respond({"id": request_id, "status": "ok"})
+                break
+            elif command == "analyze":
+                project_path = request["project_path"]
+                analyzer = analyzers.get(project_path)
+                if analyzer is None:
+                    analyzer = ProjectAnalyzer(project_path, write_comments=False)
+                    analyzer.setup()
+                    analyzers[project_path] = analyzer
+                analyzer.write_comments = bool(request.get("write_comments", False))
+                
+                paths = request.get("paths")
+                if paths is not None:
+                    # Incremental request: only the listed files changed
+                    analyzer.analyze_paths(paths)
+                else:
+                    analyzer.current_metadata = {}
+                    analyzer.analyze_project()
+                analyzer.save_metadata()
+                # Keep the metadata in memory instead of reloading it next time
+                analyzer.previous_metadata = analyzer.current_metadata
+                
+                # The id goes first so the plugin can match the response
+                # before it starts streaming the change records
+                response = {"id": request_id}
+                response.update(build_structured_output(
+                    project_path, analyzer.current_metadata,
+                    os.path.getmtime(analyzer.metadata_file),
+                    analyzer.changes.values()
+                ))
+                response["written_files"] = analyzer.written_files
+                respond(response)
+            else:
+                respond({"id": request_id, "status": "error",
+                         "message": f"Unknown command: {command}"})
+        except Exception as e:
+            respond({"id": request_id, "status": "error", "message": str(e)})
+
+
 if __name__ == "__main__":
-    main() 
\ No newline at end of file
+    main()
@@ -0,0 +1,76 @@
+package com.pycompilecheck;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Full project scans against re-analyzing only the files an edit touched,
+ * on a generated project written to a temporary directory. The same
+ * {@link #CHANGED_FILES} files are edited again before every call, outside
+ * the measured time, so each scan finds them changed.
+ */
+@State(Scope.Benchmark)
+public class ChangeDetectionBenchmark {
+
+    private static final int CHANGED_FILES = 10;
+
+    @Param({"1000", "10000", "100000"})
+    int fileCount;
+
+    private Path root;
+    private SyntheticProject project;
+    private ChangeDetectionEngine engine;
+    private List<Path> changed;
+    private int revision;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("pycompilecheck-bench");
+        project = new SyntheticProject(fileCount);
+        project.writeTo(root);
+
+        engine = new ChangeDetectionEngine(root);
+        // Baseline metadata, so later scans compare instead of seeding
+        engine.analyzeProject();
+    }
+
+    // Per call: a scan brings the metadata up to date, so the next one would find nothing
+    @Setup(Level.Invocation)
+    public void editFiles() throws IOException {
+        revision++;
+        changed = new ArrayList<>(CHANGED_FILES);
+        int step = Math.max(1, fileCount / CHANGED_FILES);
+        for (int i = 0; i < CHANGED_FILES; i++) {
+            int index = (i * step + revision) % fileCount;
+            project.touch(root, index, revision);
+            changed.add(root.resolve(project.getRelPaths().get(index)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        engine.shutdown();
+        SyntheticProject.delete(root);
+    }
+
+    @Benchmark
+    public ChangeReport fullScan() throws IOException {
+        return engine.analyzeProject();
+    }
+
+    @Benchmark
+    public ChangeReport incrementalScan() throws IOException {
+        return engine.analyzePaths(changed);
+    }
+}
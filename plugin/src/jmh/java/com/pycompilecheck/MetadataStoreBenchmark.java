@@ -0,0 +1,68 @@
+package com.pycompilecheck;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Save/load round trips of the metadata: metadata.json, as shared with the
+ * Python CLI, and the memory-mapped binary store the plugin works from.
+ */
+@State(Scope.Benchmark)
+public class MetadataStoreBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int fileCount;
+
+    private Path root;
+    private Map<String, FileMetadata> metadata;
+    private MetadataStore jsonStore;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("pycompilecheck-bench");
+        SyntheticProject project = new SyntheticProject(fileCount);
+        List<String> relPaths = project.getRelPaths();
+        List<FileMetadata> entries = project.metadata();
+
+        metadata = new TreeMap<>();
+        for (int i = 0; i < relPaths.size(); i++) {
+            metadata.put(relPaths.get(i), entries.get(i));
+        }
+        jsonStore = new MetadataStore(root);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        SyntheticProject.delete(root);
+    }
+
+    @Benchmark
+    public Map<String, FileMetadata> jsonRoundTrip() throws IOException {
+        jsonStore.save(metadata);
+        return jsonStore.load();
+    }
+
+    @Benchmark
+    public int binaryRoundTrip() throws IOException {
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            store.clear();
+            for (Map.Entry<String, FileMetadata> entry : metadata.entrySet()) {
+                store.put(entry.getKey(), entry.getValue());
+            }
+        }
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            return store.toMap().size();
+        }
+    }
+}
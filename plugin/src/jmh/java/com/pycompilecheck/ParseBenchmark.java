@@ -0,0 +1,36 @@
+package com.pycompilecheck;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Parsing analyzer output into a {@link PyCompileCheckResult}, as
+ * PyCompileCheckInspection.parseAnalysisResults does. The parser is called
+ * directly so the benchmark doesn't need the IDE on its classpath.
+ */
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    static final String PROJECT_PATH = "/home/dev/project";
+
+    @Param({"1000", "10000", "100000"})
+    int fileCount;
+
+    private String output;
+
+    @Setup
+    public void setUp() {
+        output = new SyntheticProject(fileCount).analyzerOutput(PROJECT_PATH);
+    }
+
+    @Benchmark
+    public PyCompileCheckResult parseAnalysisResults() throws IOException {
+        return AnalysisOutputParser.parse(new StringReader(output), PROJECT_PATH);
+    }
+}
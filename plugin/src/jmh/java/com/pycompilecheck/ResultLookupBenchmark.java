@@ -0,0 +1,68 @@
+package com.pycompilecheck;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lookups the inspection and project view make against a result: per-file
+ * flags, per-directory "anything changed below", and the diff between two
+ * consecutive results that decides which editors get re-highlighted.
+ */
+@State(Scope.Benchmark)
+public class ResultLookupBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int fileCount;
+
+    private PyCompileCheckResult result;
+    private PyCompileCheckResult previous;
+    private String[] files;
+    private String[] directories;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticProject project = new SyntheticProject(fileCount);
+        String output = project.analyzerOutput(ParseBenchmark.PROJECT_PATH);
+        result = AnalysisOutputParser.parse(new StringReader(output), ParseBenchmark.PROJECT_PATH);
+        previous = AnalysisOutputParser.parse(new StringReader(output), ParseBenchmark.PROJECT_PATH);
+
+        // About 1% of the files changed flags since the previous result
+        List<String> relPaths = project.getRelPaths();
+        for (int i = 0; i < relPaths.size(); i += 100) {
+            result.addRelativeChange(relPaths.get(i), false, true, false, "");
+        }
+
+        files = new String[relPaths.size()];
+        directories = new String[relPaths.size()];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = ParseBenchmark.PROJECT_PATH + "/" + relPaths.get(i);
+            directories[i] = files[i].substring(0, files[i].lastIndexOf('/'));
+        }
+    }
+
+    @Benchmark
+    public int getFlags() {
+        next = (next + 1) % files.length;
+        return result.getFlags(files[next]);
+    }
+
+    @Benchmark
+    public boolean hasChangesUnder() {
+        next = (next + 1) % directories.length;
+        return result.hasChangesUnder(directories[next]);
+    }
+
+    @Benchmark
+    public Set<String> changedFilesSince() {
+        return result.changedFilesSince(previous);
+    }
+}
@@ -0,0 +1,171 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates Django-shaped Python projects for the benchmarks: apps with a
+ * few modules each, spread over nested packages, with imports between them.
+ * Output is deterministic for a given file count.
+ */
+final class SyntheticProject {
+
+    static final int FILES_PER_PACKAGE = 50;
+
+    private static final String[] MODULES = {"models", "views", "forms", "urls", "admin", "serializers", "tasks"};
+
+    private final int fileCount;
+    private final List<String> relPaths = new ArrayList<>();
+
+    SyntheticProject(int fileCount) {
+        this.fileCount = fileCount;
+        for (int i = 0; i < fileCount; i++) {
+            relPaths.add(relPath(i));
+        }
+    }
+
+    /**
+     * Paths of the generated files relative to the project root, '/'-separated.
+     */
+    @NotNull List<String> getRelPaths() {
+        return relPaths;
+    }
+
+    int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Writes the project below root.
+     */
+    void writeTo(@NotNull Path root) throws IOException {
+        Random random = new Random(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            Path file = root.resolve(relPaths.get(i));
+            Files.createDirectories(file.getParent());
+            Files.write(file, source(i, random).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Rewrites a file with different content, as an edit would.
+     */
+    void touch(@NotNull Path root, int index, int revision) throws IOException {
+        Random random = new Random(index * 31L + revision);
+        String source = source(index, random) + "\n\ndef edited_" + revision + "():\n    return " + revision + "\n";
+        Files.write(root.resolve(relPaths.get(index)), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Output of pycharm_integration.py for this project with every other
+     * file changed.
+     */
+    @NotNull String analyzerOutput(@NotNull String projectPath) {
+        StringBuilder out = new StringBuilder(fileCount * 160);
+        out.append("Analyzing ").append(projectPath).append("...\n");
+        out.append(AnalysisOutputParser.OUTPUT_START).append('\n');
+        out.append("{\"status\": \"success\", \"project_path\": \"").append(projectPath)
+            .append("\", \"timestamp\": 1710929000.123456, \"changes\": [");
+        for (int i = 0; i < fileCount; i += 2) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            boolean size = i % 3 == 0;
+            out.append("{\"file\": \"").append(relPaths.get(i)).append("\", ")
+                .append("\"has_content_changes\": true, ")
+                .append("\"has_import_changes\": ").append(i % 5 == 0).append(", ")
+                .append("\"has_size_changes\": ").append(size).append(", ")
+                .append("\"size_change_info\": \"").append(size ? "from 1024 to 1100 bytes" : "").append("\"}");
+        }
+        out.append("]}\n");
+        out.append("PYCOMPILECHECK_OUTPUT_END\n");
+        return out.toString();
+    }
+
+    /**
+     * Metadata entries matching the generated files, without touching disk.
+     */
+    @NotNull List<FileMetadata> metadata() {
+        Random random = new Random(fileCount);
+        List<FileMetadata> metadata = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            String source = source(i, random);
+            List<String> imports = new ArrayList<>();
+            for (String line : source.split("\n")) {
+                if (line.startsWith("import ") || line.startsWith("from ")) {
+                    imports.add(line);
+                }
+            }
+            metadata.add(new FileMetadata(
+                1710929000.0 + i,
+                source.length(),
+                String.format("%064x", (long) source.hashCode() * 0x9e3779b97f4a7c15L),
+                imports,
+                "2024-03-20T10:00:00.000000"
+            ));
+        }
+        return metadata;
+    }
+
+    static void delete(@NotNull Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private @NotNull String relPath(int index) {
+        // project/appN/pkgM/module_K.py, FILES_PER_PACKAGE files per package
+        int packageIndex = index / FILES_PER_PACKAGE;
+        int app = packageIndex / 10;
+        return "app" + app + "/pkg" + (packageIndex % 10) + "/"
+            + MODULES[index % MODULES.length] + "_" + index + ".py";
+    }
+
+    private @NotNull String source(int index, @NotNull Random random) {
+        StringBuilder source = new StringBuilder(1024);
+        source.append("\"\"\"Generated module ").append(index).append(".\"\"\"\n");
+        source.append("import os\n");
+        source.append("from django.db import models\n");
+        if (index > 0) {
+            String target = relPaths.get(random.nextInt(index)).replace('/', '.');
+            source.append("from ").append(target, 0, target.length() - 3).append(" import helper\n");
+        }
+        source.append('\n');
+
+        int functions = 2 + random.nextInt(4);
+        for (int f = 0; f < functions; f++) {
+            source.append("def helper_").append(f).append("(value, factor=").append(f + 1).append("):\n");
+            source.append("    result = value * factor\n");
+            source.append("    if result > ").append(random.nextInt(1000)).append(":\n");
+            source.append("        return os.path.join(str(result), 'x')\n");
+            source.append("    return result\n\n");
+        }
+        source.append("class Model").append(index).append("(models.Model):\n");
+        source.append("    name = models.CharField(max_length=").append(16 + random.nextInt(200)).append(")\n\n");
+        source.append("    def __str__(self):\n        return self.name\n");
+        return source.toString();
+    }
+}
@@ -0,0 +1,354 @@
+package com.pycompilecheck;
+
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms for the analysis pipeline of one project.
+ *
+ * <p>Recording is a few atomic adds, so it stays on in normal use. The
+ * numbers are shown by the status bar widget and written to
+ * .pycompilecheck/stats.json after analysis runs, at most every
+ * {@link #EXPORT_INTERVAL_MS}.</p>
+ */
+public class AnalysisMetrics {
+
+    static final String STATS_FILE = "stats.json";
+    static final long EXPORT_INTERVAL_MS = 10_000;
+
+    public final Histogram debounceWait = Histogram.millis("debounce_wait");
+    public final Histogram processSpawn = Histogram.millis("process_spawn");
+    public final Histogram walk = Histogram.millis("walk");
+    public final Histogram hash = Histogram.millis("hash");
+    public final Histogram parse = Histogram.millis("parse");
+    public final Histogram analysis = Histogram.millis("analysis");
+    public final Histogram resultSize = Histogram.count("result_size");
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder cancelledRuns = new LongAdder();
+    private final LongAdder failedRuns = new LongAdder();
+    private final LongAdder inspectionErrors = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastExportAt = new AtomicLong();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final @Nullable Path statsFile;
+
+    public AnalysisMetrics(@Nullable Path projectRoot) {
+        this.statsFile = projectRoot != null
+            ? projectRoot.resolve(MetadataStore.METADATA_DIR).resolve(STATS_FILE)
+            : null;
+    }
+
+    /**
+     * Records a finished analysis run, notifies listeners and exports the
+     * stats file if it is due.
+     */
+    public void recordRun(long durationNanos, boolean cancelled, boolean failed) {
+        runs.increment();
+        if (cancelled) {
+            cancelledRuns.increment();
+        } else if (failed) {
+            failedRuns.increment();
+        } else {
+            analysis.record(durationNanos);
+        }
+        listeners.forEach(Runnable::run);
+        exportIfDue();
+    }
+
+    public void recordInspectionError() {
+        inspectionErrors.increment();
+    }
+
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    public void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /**
+     * Updates the scheduler gauges: runs waiting for their debounce delay or
+     * for the running one to finish, and runs in progress.
+     */
+    public void setQueueState(int queued, int inFlight) {
+        this.queued.set(queued);
+        this.inFlight.set(inFlight);
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    public long getCancelledRuns() {
+        return cancelledRuns.sum();
+    }
+
+    public long getFailedRuns() {
+        return failedRuns.sum();
+    }
+
+    public long getInspectionErrors() {
+        return inspectionErrors.sum();
+    }
+
+    /**
+     * Share of result cache lookups served without running an analysis, or
+     * -1 before the first lookup.
+     */
+    public double getCacheHitRate() {
+        long hits = cacheHits.sum();
+        long total = hits + cacheMisses.sum();
+        return total == 0 ? -1 : (double) hits / total;
+    }
+
+    public @NotNull List<Histogram> getHistograms() {
+        return List.of(debounceWait, processSpawn, walk, hash, parse, analysis, resultSize);
+    }
+
+    /**
+     * Registers a callback run after every analysis run, on the analysis thread.
+     */
+    public void addListener(@NotNull Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NotNull Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    public void exportIfDue() {
+        long now = System.currentTimeMillis();
+        long last = lastExportAt.get();
+        if (now - last >= EXPORT_INTERVAL_MS && lastExportAt.compareAndSet(last, now)) {
+            try {
+                export();
+            } catch (IOException e) {
+                // Stats are best effort; the next run tries again
+            }
+        }
+    }
+
+    /**
+     * Writes all counters and histograms to .pycompilecheck/stats.json.
+     */
+    public void export() throws IOException {
+        if (statsFile == null) {
+            return;
+        }
+        Files.createDirectories(statsFile.getParent());
+        Path tmp = statsFile.resolveSibling(STATS_FILE + ".tmp");
+
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8);
+             JsonWriter writer = new JsonWriter(out)) {
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("generated_at").value(LocalDateTime.now().format(FileMetadata.TIMESTAMP_FORMAT));
+            writer.name("runs").value(getRuns());
+            writer.name("cancelled_runs").value(getCancelledRuns());
+            writer.name("failed_runs").value(getFailedRuns());
+            writer.name("inspection_errors").value(getInspectionErrors());
+
+            writer.name("cache").beginObject();
+            writer.name("hits").value(cacheHits.sum());
+            writer.name("misses").value(cacheMisses.sum());
+            double hitRate = getCacheHitRate();
+            if (hitRate >= 0) {
+                writer.name("hit_rate").value(hitRate);
+            }
+            writer.endObject();
+
+            writer.name("queue").beginObject();
+            writer.name("queued").value(getQueued());
+            writer.name("in_flight").value(getInFlight());
+            writer.endObject();
+
+            writer.name("histograms").beginObject();
+            for (Histogram histogram : getHistograms()) {
+                writer.name(histogram.getName()).beginObject();
+                writer.name("unit").value(histogram.getUnit());
+                for (Map.Entry<String, Number> field : histogram.summary().entrySet()) {
+                    writer.name(field.getKey()).value(field.getValue());
+                }
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+        Files.move(tmp, statsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * One line per histogram, for tooltips and logs.
+     */
+    public @NotNull List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Runs: " + getRuns() + " (" + getCancelledRuns() + " cancelled, " + getFailedRuns() + " failed)");
+        double hitRate = getCacheHitRate();
+        lines.add("Cache hit rate: " + (hitRate < 0 ? "n/a" : Math.round(hitRate * 100) + "%"));
+        lines.add("Queued: " + getQueued() + ", in flight: " + getInFlight());
+        for (Histogram histogram : getHistograms()) {
+            if (histogram.getCount() > 0) {
+                String unit = histogram.getUnit().equals("ms") ? " ms" : "";
+                lines.add(histogram.getName() + ": last " + format(histogram.getLast()) + unit
+                    + ", p50 " + format(histogram.getPercentile(0.5)) + unit
+                    + ", p95 " + format(histogram.getPercentile(0.95)) + unit
+                    + " (" + histogram.getCount() + ")");
+            }
+        }
+        if (getInspectionErrors() > 0) {
+            lines.add("Inspection errors: " + getInspectionErrors());
+        }
+        return lines;
+    }
+
+    private static @NotNull String format(double value) {
+        return value >= 100 || value == Math.rint(value)
+            ? String.valueOf(Math.round(value))
+            : String.format("%.1f", value);
+    }
+
+    /**
+     * Histogram with power-of-two buckets. Recording is lock-free; the
+     * percentiles it reports are bucket upper bounds, so within 2x.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 64;
+
+        private final String name;
+        private final String unit;
+        private final double scale;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLong last = new AtomicLong();
+
+        private Histogram(@NotNull String name, @NotNull String unit, double scale) {
+            this.name = name;
+            this.unit = unit;
+            this.scale = scale;
+        }
+
+        /**
+         * Durations, recorded in nanoseconds and reported in milliseconds.
+         */
+        static @NotNull Histogram millis(@NotNull String name) {
+            return new Histogram(name, "ms", 1e-6);
+        }
+
+        /**
+         * Plain counts, such as the number of files in a result.
+         */
+        static @NotNull Histogram count(@NotNull String name) {
+            return new Histogram(name, "count", 1);
+        }
+
+        public void record(long value) {
+            if (value < 0) {
+                return;
+            }
+            // Bucket 0 holds zero, bucket i > 0 holds [2^(i-1), 2^i)
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+            last.set(value);
+        }
+
+        public @NotNull String getName() {
+            return name;
+        }
+
+        public @NotNull String getUnit() {
+            return unit;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : sum.sum() * scale / n;
+        }
+
+        public double getMax() {
+            return max.get() * scale;
+        }
+
+        public double getLast() {
+            return last.get() * scale;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile, 0 < q <= 1.
+         */
+        public double getPercentile(double q) {
+            long n = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                n += snapshot[i];
+            }
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    long upper = i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upper, max.get()) * scale;
+                }
+            }
+            return getMax();
+        }
+
+        @NotNull Map<String, Number> summary() {
+            Map<String, Number> summary = new LinkedHashMap<>();
+            summary.put("count", getCount());
+            summary.put("mean", round(getMean()));
+            summary.put("p50", round(getPercentile(0.5)));
+            summary.put("p95", round(getPercentile(0.95)));
+            summary.put("max", round(getMax()));
+            summary.put("last", round(getLast()));
+            return summary;
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 1000) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.pycompilecheck;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for analyzer output. Change records are read one at a
+ * time from the process stream and added straight to the result, so the
+ * raw JSON is never held in memory.
+ */
+final class AnalysisOutputParser {
+
+    static final String OUTPUT_START = "PYCOMPILECHECK_OUTPUT_START";
+
+    private AnalysisOutputParser() {
+    }
+
+    /**
+     * Parses the marker-delimited output of pycharm_integration.py.
+     * Log lines before the start marker are skipped.
+     */
+    static @NotNull PyCompileCheckResult parse(@NotNull Reader output, @NotNull String projectPath) throws IOException {
+        BufferedReader lines = output instanceof BufferedReader ? (BufferedReader) output : new BufferedReader(output);
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.trim().equals(OUTPUT_START)) {
+                return readResponse(new JsonReader(lines), projectPath).result;
+            }
+        }
+        return new PyCompileCheckResult(projectPath);
+    }
+
+    /**
+     * Reads one analyzer response object from the reader. The reader is left
+     * positioned after the object, so a lenient reader can be reused for the
+     * next response of a long-lived process.
+     */
+    static @NotNull Response readResponse(@NotNull JsonReader reader, @NotNull String projectPath) throws IOException {
+        Response response = new Response(projectPath);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    response.id = reader.nextLong();
+                    break;
+                case "status":
+                    response.status = nextStringOrNull(reader);
+                    break;
+                case "message":
+                    response.message = nextStringOrNull(reader);
+                    break;
+                case "changes":
+                    readChanges(reader, response.result);
+                    break;
+                case "written_files":
+                    readWrittenFiles(reader, response.writtenFiles);
+                    break;
+                case "timestamp":
+                    // metadata.json mtime in seconds, used as the generation
+                    response.result.setGeneration((long) (reader.nextDouble() * 1000));
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return response;
+    }
+
+    private static void readChanges(@NotNull JsonReader reader,
+                                    @NotNull PyCompileCheckResult result) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String file = null;
+            boolean content = false;
+            boolean imports = false;
+            boolean size = false;
+            String sizeInfo = "";
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "file":
+                        file = nextStringOrNull(reader);
+                        break;
+                    case "has_content_changes":
+                        content = reader.nextBoolean();
+                        break;
+                    case "has_import_changes":
+                        imports = reader.nextBoolean();
+                        break;
+                    case "has_size_changes":
+                        size = reader.nextBoolean();
+                        break;
+                    case "size_change_info":
+                        String info = nextStringOrNull(reader);
+                        sizeInfo = info != null ? info : "";
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (file != null) {
+                result.addRelativeChange(file, content, imports, size, sizeInfo);
+            }
+        }
+        reader.endArray();
+    }
+
+    private static void readWrittenFiles(@NotNull JsonReader reader,
+                                         @NotNull List<WrittenFile> writtenFiles) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            WrittenFile written = new WrittenFile();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "file":
+                        written.file = nextStringOrNull(reader);
+                        break;
+                    case "size":
+                        written.size = reader.nextLong();
+                        break;
+                    case "mtime_ms":
+                        written.mtimeMillis = reader.nextLong();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (written.file != null) {
+                writtenFiles.add(written);
+            }
+        }
+        reader.endArray();
+    }
+
+    private static @Nullable String nextStringOrNull(@NotNull JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    static class Response {
+        Long id;
+        String status;
+        String message;
+        final PyCompileCheckResult result;
+        // Sources the analyzer added TODO comments to
+        final List<WrittenFile> writtenFiles = new ArrayList<>();
+
+        Response(@NotNull String projectPath) {
+            this.result = new PyCompileCheckResult(projectPath);
+        }
+    }
+
+    /**
+     * A file the analyzer rewrote, by path relative to the project root,
+     * with the size and mtime it left it with.
+     */
+    static class WrittenFile {
+        String file;
+        long size;
+        long mtimeMillis;
+    }
+}
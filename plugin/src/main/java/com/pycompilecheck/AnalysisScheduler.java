@@ -0,0 +1,249 @@
+package com.pycompilecheck;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debounces analysis requests and runs at most one analysis at a time.
+ *
+ * <ul>
+ *   <li>Requests are coalesced on the trailing edge: every request pushes the
+ *       run back by the current delay, but never past the maximum wait measured
+ *       from the first request of the burst.</li>
+ *   <li>A request that arrives while an analysis is running cancels it, since
+ *       its result is already stale, and queues a single follow-up run. A run
+ *       that has already been preempted several times in a row is allowed to
+ *       finish so that continuous saves cannot starve analysis.</li>
+ *   <li>The delay follows the measured analysis duration: fast analyses are
+ *       scheduled soon after the last save, slow ones wait longer so more
+ *       saves are folded into each run.</li>
+ * </ul>
+ *
+ * <p>Debounce waits, run durations and the queue state are recorded in the
+ * project's {@link AnalysisMetrics}.</p>
+ */
+public class AnalysisScheduler {
+
+    private static final Logger LOG = Logger.getInstance(AnalysisScheduler.class);
+
+    static final long INITIAL_DELAY_MS = 2_000;
+    static final long MIN_DELAY_MS = 300;
+    static final long MAX_DELAY_MS = 5_000;
+    static final long MIN_MAX_WAIT_MS = 2_000;
+    static final long MAX_MAX_WAIT_MS = 15_000;
+    private static final int MAX_CONSECUTIVE_CANCELS = 2;
+    private static final double DURATION_SMOOTHING = 0.3;
+
+    /**
+     * The analysis being scheduled. Implementations should check the
+     * cancellation regularly and register hooks for work that can't poll,
+     * like an external process.
+     */
+    public interface Task {
+        void run(@NotNull Cancellation cancellation) throws Exception;
+    }
+
+    private final Task task;
+    private final AnalysisMetrics metrics;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService runner;
+
+    private final Object lock = new Object();
+    private ScheduledFuture<?> scheduled;
+    private long burstStartedAt = -1;
+    private boolean running;
+    private boolean followUp;
+    private Cancellation current;
+    private int consecutiveCancels;
+    private double averageDurationMs = -1;
+
+    public AnalysisScheduler(@NotNull Task task, @NotNull AnalysisMetrics metrics) {
+        this.task = task;
+        this.metrics = metrics;
+        this.timer = Executors.newSingleThreadScheduledExecutor();
+        this.runner = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Asks for an analysis to run once the current burst of requests settles.
+     */
+    public void request() {
+        synchronized (lock) {
+            if (running) {
+                followUp = true;
+                publishQueueStateLocked();
+                if (consecutiveCancels < MAX_CONSECUTIVE_CANCELS && !current.isCancelled()) {
+                    LOG.info("PyCompileCheck cancelling stale analysis");
+                    current.cancel();
+                }
+                return;
+            }
+            scheduleLocked();
+        }
+    }
+
+    public void shutdown() {
+        synchronized (lock) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            if (current != null) {
+                current.cancel();
+            }
+            scheduled = null;
+            followUp = false;
+            publishQueueStateLocked();
+        }
+        timer.shutdownNow();
+        runner.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    /**
+     * Current debounce delay, derived from the measured analysis duration.
+     */
+    public long getDelayMillis() {
+        synchronized (lock) {
+            return delayLocked();
+        }
+    }
+
+    private void scheduleLocked() {
+        long now = System.currentTimeMillis();
+        if (burstStartedAt < 0) {
+            burstStartedAt = now;
+        }
+
+        long delay = delayLocked();
+        long maxWait = Math.max(MIN_MAX_WAIT_MS, Math.min(MAX_MAX_WAIT_MS, 4 * delay));
+        long untilCap = burstStartedAt + maxWait - now;
+
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        scheduled = timer.schedule(this::fire, Math.max(0, Math.min(delay, untilCap)), TimeUnit.MILLISECONDS);
+        publishQueueStateLocked();
+    }
+
+    private long delayLocked() {
+        if (averageDurationMs < 0) {
+            return INITIAL_DELAY_MS;
+        }
+        return Math.max(MIN_DELAY_MS, Math.min(MAX_DELAY_MS, (long) averageDurationMs));
+    }
+
+    private void fire() {
+        Cancellation cancellation;
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            metrics.debounceWait.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - burstStartedAt));
+            scheduled = null;
+            burstStartedAt = -1;
+            running = true;
+            cancellation = new Cancellation();
+            current = cancellation;
+            publishQueueStateLocked();
+        }
+        runner.execute(() -> execute(cancellation));
+    }
+
+    private void execute(@NotNull Cancellation cancellation) {
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            task.run(cancellation);
+        } catch (CancellationException e) {
+            cancellation.cancel();
+        } catch (Exception e) {
+            failed = true;
+            LOG.error("Error running PyCompileCheck analysis", e);
+        } finally {
+            long durationNanos = System.nanoTime() - start;
+            long duration = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+            synchronized (lock) {
+                running = false;
+                current = null;
+                if (cancellation.isCancelled()) {
+                    consecutiveCancels++;
+                } else {
+                    consecutiveCancels = 0;
+                    averageDurationMs = averageDurationMs < 0
+                        ? duration
+                        : DURATION_SMOOTHING * duration + (1 - DURATION_SMOOTHING) * averageDurationMs;
+                }
+                if (followUp) {
+                    followUp = false;
+                    scheduleLocked();
+                }
+                publishQueueStateLocked();
+            }
+            metrics.recordRun(durationNanos, cancellation.isCancelled(), failed);
+        }
+    }
+
+    private void publishQueueStateLocked() {
+        int queued = (scheduled != null ? 1 : 0) + (followUp ? 1 : 0);
+        metrics.setQueueState(queued, running ? 1 : 0);
+    }
+
+    /**
+     * Cancellation state of one analysis run.
+     */
+    public static final class Cancellation {
+        private final List<Runnable> hooks = new ArrayList<>();
+        private volatile boolean cancelled;
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void checkCanceled() {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+        }
+
+        /**
+         * Registers work to run on cancellation, e.g. killing a process.
+         * Runs immediately if the run is already cancelled.
+         */
+        public void onCancel(@NotNull Runnable hook) {
+            synchronized (hooks) {
+                if (!cancelled) {
+                    hooks.add(hook);
+                    return;
+                }
+            }
+            hook.run();
+        }
+
+        void cancel() {
+            List<Runnable> toRun;
+            synchronized (hooks) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                toRun = new ArrayList<>(hooks);
+                hooks.clear();
+            }
+            toRun.forEach(Runnable::run);
+        }
+    }
+}
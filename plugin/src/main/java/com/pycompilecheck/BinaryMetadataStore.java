@@ -0,0 +1,483 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact on-disk metadata store, updated in place through memory-mapped files.
+ *
+ * <p>metadata.bin holds a small header followed by fixed-size records, one per
+ * file, with the content hash kept as raw bytes (32 for SHA-256, 16 for
+ * MurmurHash3, told apart by a flag). Paths and import lists live in
+ * metadata.strings, an append-only table where equal strings are stored once
+ * (an import list is interned as its lines joined with '\n'). The path index
+ * is rebuilt in memory when the store is opened, so lookups are O(1) and
+ * updating one file rewrites one record.</p>
+ *
+ * <p>metadata.json remains the exchange format for tooling: see
+ * {@link #exportJson} and {@link #syncFromJson}.</p>
+ */
+public class BinaryMetadataStore implements Closeable {
+
+    static final String RECORDS_FILE = "metadata.bin";
+    static final String STRINGS_FILE = "metadata.strings";
+
+    private static final int RECORDS_MAGIC = 0x50434342; // "PCCB"
+    private static final int STRINGS_MAGIC = 0x50434353; // "PCCS"
+    private static final int VERSION = 2;
+
+    // metadata.bin header: magic, version, slot count, live count, metadata.json stamp, generation
+    private static final int HEADER_SIZE = 32;
+    private static final int H_SLOTS = 8;
+    private static final int H_LIVE = 12;
+    private static final int H_JSON_STAMP = 16;
+    private static final int H_GENERATION = 24;
+
+    // Record layout
+    private static final int RECORD_SIZE = 80;
+    private static final int R_FLAGS = 0;
+    private static final int R_PATH = 4;
+    private static final int R_IMPORTS = 8;
+    private static final int R_SIZE = 16;
+    private static final int R_MTIME = 24;
+    private static final int R_ANALYZED = 32;
+    private static final int R_HASH = 40;
+    private static final int HASH_SIZE = 32;
+    private static final int R_INODE = 72;
+    private static final int MURMUR3_SIZE = 16;
+
+    private static final int FLAG_LIVE = 1;
+    private static final int FLAG_NO_HASH = 2;
+    private static final int FLAG_MURMUR3 = 4;
+
+    // metadata.strings header: magic, version, used bytes
+    private static final int STRINGS_HEADER_SIZE = 16;
+    private static final int S_USED = 8;
+
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int INITIAL_STRINGS = 64 * 1024;
+    private static final long COMPACT_MIN_BYTES = 4L * 1024 * 1024;
+
+    private final Path recordsFile;
+    private final Path stringsFile;
+    private FileChannel recordsChannel;
+    private FileChannel stringsChannel;
+    private MappedByteBuffer records;
+    private MappedByteBuffer strings;
+
+    private final Map<String, Integer> pathIndex = new HashMap<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int slotCount;
+    private int stringsUsed;
+
+    private BinaryMetadataStore(@NotNull Path dir) {
+        this.recordsFile = dir.resolve(RECORDS_FILE);
+        this.stringsFile = dir.resolve(STRINGS_FILE);
+    }
+
+    /**
+     * Opens the store under the project's .pycompilecheck directory,
+     * creating it if needed.
+     */
+    public static @NotNull BinaryMetadataStore open(@NotNull Path projectRoot) throws IOException {
+        Path dir = projectRoot.resolve(MetadataStore.METADATA_DIR);
+        Files.createDirectories(dir);
+
+        BinaryMetadataStore store = new BinaryMetadataStore(dir);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            // A corrupt or foreign-version store is rebuilt from scratch
+            store.close();
+            Files.deleteIfExists(store.recordsFile);
+            Files.deleteIfExists(store.stringsFile);
+            store = new BinaryMetadataStore(dir);
+            store.load();
+        }
+        store.compactIfWasteful();
+        return store;
+    }
+
+    public int size() {
+        return pathIndex.size();
+    }
+
+    public boolean contains(@NotNull String relPath) {
+        return pathIndex.containsKey(relPath);
+    }
+
+    public @NotNull Set<String> paths() {
+        return Collections.unmodifiableSet(pathIndex.keySet());
+    }
+
+    public @Nullable FileMetadata get(@NotNull String relPath) {
+        Integer slot = pathIndex.get(relPath);
+        return slot != null ? readRecord(slot) : null;
+    }
+
+    /**
+     * Generation of the stored metadata, advanced once per analysis run.
+     */
+    public long getGeneration() {
+        return records.getLong(H_GENERATION);
+    }
+
+    /**
+     * Advances the generation to the current time in milliseconds, the same
+     * clock as the Python analyzer's generations, or by one if the clock
+     * hasn't moved past the stored value. A rebuilt store thus keeps
+     * producing generations above the results of the store it replaced.
+     */
+    public long nextGeneration() {
+        long generation = Math.max(records.getLong(H_GENERATION) + 1, System.currentTimeMillis());
+        records.putLong(H_GENERATION, generation);
+        return generation;
+    }
+
+    /**
+     * Inserts or overwrites the record for one file in place.
+     */
+    public void put(@NotNull String relPath, @NotNull FileMetadata metadata) throws IOException {
+        Integer slot = pathIndex.get(relPath);
+        if (slot == null) {
+            slot = allocateSlot();
+        }
+
+        int pathRef = intern(relPath);
+        int importsRef = intern(String.join("\n", metadata.getImports()));
+        boolean murmur = FileMetadata.MURMUR3_128.equals(metadata.getHashAlgorithm());
+        // Hashes of unknown algorithms are dropped, which makes the engine re-hash the file
+        byte[] hash = murmur || FileMetadata.SHA256.equals(metadata.getHashAlgorithm())
+            ? decodeHash(metadata.getHash(), murmur ? MURMUR3_SIZE : HASH_SIZE)
+            : null;
+
+        int base = HEADER_SIZE + slot * RECORD_SIZE;
+        records.putInt(base + R_PATH, pathRef);
+        records.putInt(base + R_IMPORTS, importsRef);
+        records.putLong(base + R_SIZE, metadata.getSize());
+        records.putDouble(base + R_MTIME, metadata.getLastModified());
+        records.putLong(base + R_ANALYZED, toEpochMicros(metadata.getLastAnalyzed()));
+        records.put(base + R_HASH, hash != null ? Arrays.copyOf(hash, HASH_SIZE) : new byte[HASH_SIZE], 0, HASH_SIZE);
+        records.putLong(base + R_INODE, metadata.getInode());
+        // Flags last, so a record only becomes live once it is complete
+        records.putInt(base + R_FLAGS, FLAG_LIVE
+            | (hash == null ? FLAG_NO_HASH : murmur ? FLAG_MURMUR3 : 0));
+
+        if (pathIndex.put(relPath, slot) == null) {
+            records.putInt(H_LIVE, pathIndex.size());
+        }
+    }
+
+    public boolean remove(@NotNull String relPath) {
+        Integer slot = pathIndex.remove(relPath);
+        if (slot == null) {
+            return false;
+        }
+        records.putInt(HEADER_SIZE + slot * RECORD_SIZE + R_FLAGS, 0);
+        records.putInt(H_LIVE, pathIndex.size());
+        freeSlots.push(slot);
+        return true;
+    }
+
+    /**
+     * Removes the entry for relPath and every entry below it.
+     */
+    public void removeTree(@NotNull String relPath, @NotNull String separator) {
+        remove(relPath);
+        String prefix = relPath + separator;
+        List<String> below = new ArrayList<>();
+        for (String path : pathIndex.keySet()) {
+            if (path.startsWith(prefix)) {
+                below.add(path);
+            }
+        }
+        below.forEach(this::remove);
+    }
+
+    public void clear() {
+        for (String path : new ArrayList<>(pathIndex.keySet())) {
+            remove(path);
+        }
+    }
+
+    /**
+     * Returns every entry, ordered by path.
+     */
+    public @NotNull Map<String, FileMetadata> toMap() {
+        List<String> sorted = new ArrayList<>(pathIndex.keySet());
+        Collections.sort(sorted);
+        Map<String, FileMetadata> map = new LinkedHashMap<>();
+        for (String path : sorted) {
+            map.put(path, readRecord(pathIndex.get(path)));
+        }
+        return map;
+    }
+
+    /**
+     * Writes all entries to metadata.json for the Python CLI and other tooling.
+     */
+    public void exportJson(@NotNull MetadataStore json) throws IOException {
+        json.save(toMap());
+        records.putLong(H_JSON_STAMP, json.getMetadataFile().toFile().lastModified());
+    }
+
+    /**
+     * Replaces all entries with the content of metadata.json if it was
+     * written by someone else since the last import or export.
+     *
+     * @return true if the store was reloaded
+     */
+    public boolean syncFromJson(@NotNull MetadataStore json) throws IOException {
+        long stamp = json.getMetadataFile().toFile().lastModified();
+        if (stamp == 0L || stamp == records.getLong(H_JSON_STAMP)) {
+            return false;
+        }
+
+        clear();
+        for (Map.Entry<String, FileMetadata> entry : json.load().entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+        records.putLong(H_JSON_STAMP, stamp);
+        return true;
+    }
+
+    public void flush() {
+        if (records != null && strings != null) {
+            records.force();
+            strings.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (recordsChannel != null) {
+            recordsChannel.close();
+        }
+        if (stringsChannel != null) {
+            stringsChannel.close();
+        }
+        records = null;
+        strings = null;
+    }
+
+    private void load() throws IOException {
+        boolean fresh = !Files.exists(recordsFile) || !Files.exists(stringsFile);
+        if (fresh) {
+            Files.deleteIfExists(recordsFile);
+            Files.deleteIfExists(stringsFile);
+        }
+
+        recordsChannel = FileChannel.open(recordsFile,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        stringsChannel = FileChannel.open(stringsFile,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (fresh) {
+            records = recordsChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) INITIAL_SLOTS * RECORD_SIZE);
+            records.putInt(0, RECORDS_MAGIC);
+            records.putInt(4, VERSION);
+            strings = stringsChannel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_STRINGS);
+            strings.putInt(0, STRINGS_MAGIC);
+            strings.putInt(4, VERSION);
+            strings.putLong(S_USED, STRINGS_HEADER_SIZE);
+        } else {
+            records = recordsChannel.map(FileChannel.MapMode.READ_WRITE, 0, recordsChannel.size());
+            strings = stringsChannel.map(FileChannel.MapMode.READ_WRITE, 0, stringsChannel.size());
+            if (records.getInt(0) != RECORDS_MAGIC || records.getInt(4) != VERSION
+                || strings.getInt(0) != STRINGS_MAGIC || strings.getInt(4) != VERSION) {
+                throw new IOException("Unsupported metadata store format");
+            }
+        }
+
+        slotCount = records.getInt(H_SLOTS);
+        stringsUsed = (int) strings.getLong(S_USED);
+
+        // Rebuild the string table index
+        int offset = STRINGS_HEADER_SIZE;
+        while (offset < stringsUsed) {
+            int length = strings.getInt(offset);
+            stringIndex.put(readString(offset), offset);
+            offset += 4 + length;
+        }
+
+        // Rebuild the path index and the free list
+        for (int slot = 0; slot < slotCount; slot++) {
+            int base = HEADER_SIZE + slot * RECORD_SIZE;
+            if ((records.getInt(base + R_FLAGS) & FLAG_LIVE) != 0) {
+                pathIndex.put(readString(records.getInt(base + R_PATH)), slot);
+            } else {
+                freeSlots.push(slot);
+            }
+        }
+    }
+
+    private int allocateSlot() throws IOException {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+
+        int slot = slotCount;
+        long needed = HEADER_SIZE + (long) (slot + 1) * RECORD_SIZE;
+        if (needed > records.capacity()) {
+            records = recordsChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(needed, HEADER_SIZE + 2L * (records.capacity() - HEADER_SIZE)));
+        }
+        slotCount++;
+        records.putInt(H_SLOTS, slotCount);
+        return slot;
+    }
+
+    private int intern(@NotNull String value) throws IOException {
+        Integer existing = stringIndex.get(value);
+        if (existing != null) {
+            return existing;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int offset = stringsUsed;
+        long needed = (long) offset + 4 + bytes.length;
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("Metadata string table is full");
+        }
+        if (needed > strings.capacity()) {
+            strings = stringsChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.min(Integer.MAX_VALUE, Math.max(needed, 2L * strings.capacity())));
+        }
+
+        strings.putInt(offset, bytes.length);
+        strings.put(offset + 4, bytes, 0, bytes.length);
+        stringsUsed = (int) needed;
+        strings.putLong(S_USED, stringsUsed);
+        stringIndex.put(value, offset);
+        return offset;
+    }
+
+    private @NotNull String readString(int offset) {
+        int length = strings.getInt(offset);
+        byte[] bytes = new byte[length];
+        strings.get(offset + 4, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private @NotNull FileMetadata readRecord(int slot) {
+        int base = HEADER_SIZE + slot * RECORD_SIZE;
+        int flags = records.getInt(base + R_FLAGS);
+
+        String imports = readString(records.getInt(base + R_IMPORTS));
+        boolean murmur = (flags & FLAG_MURMUR3) != 0;
+        String hash = "";
+        if ((flags & FLAG_NO_HASH) == 0) {
+            byte[] raw = new byte[murmur ? MURMUR3_SIZE : HASH_SIZE];
+            records.get(base + R_HASH, raw, 0, raw.length);
+            hash = ChangeDetectionEngine.toHex(raw);
+        }
+
+        return new FileMetadata(
+            records.getDouble(base + R_MTIME),
+            records.getLong(base + R_SIZE),
+            records.getLong(base + R_INODE),
+            hash,
+            murmur ? FileMetadata.MURMUR3_128 : FileMetadata.SHA256,
+            imports.isEmpty() ? Collections.emptyList() : Arrays.asList(imports.split("\n", -1)),
+            fromEpochMicros(records.getLong(base + R_ANALYZED))
+        );
+    }
+
+    /**
+     * Rewrites both files when most of the string table is no longer
+     * referenced, e.g. after many edits to import lists.
+     */
+    private void compactIfWasteful() throws IOException {
+        if (stringsUsed < COMPACT_MIN_BYTES) {
+            return;
+        }
+
+        Map<String, FileMetadata> entries = toMap();
+        long live = STRINGS_HEADER_SIZE;
+        Set<String> seen = new HashSet<>();
+        for (Map.Entry<String, FileMetadata> entry : entries.entrySet()) {
+            for (String value : new String[] {entry.getKey(), String.join("\n", entry.getValue().getImports())}) {
+                if (seen.add(value)) {
+                    live += 4 + value.getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+        }
+        if (stringsUsed < 3 * live) {
+            return;
+        }
+
+        long jsonStamp = records.getLong(H_JSON_STAMP);
+        long generation = records.getLong(H_GENERATION);
+        close();
+        Files.deleteIfExists(recordsFile);
+        Files.deleteIfExists(stringsFile);
+        pathIndex.clear();
+        stringIndex.clear();
+        freeSlots.clear();
+        load();
+        for (Map.Entry<String, FileMetadata> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+        records.putLong(H_JSON_STAMP, jsonStamp);
+        records.putLong(H_GENERATION, generation);
+    }
+
+    private static byte @Nullable [] decodeHash(@NotNull String hex, int size) {
+        if (hex.length() != size * 2) {
+            return null;
+        }
+        byte[] raw = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int hi = Character.digit(hex.charAt(i * 2), 16);
+            int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (hi < 0 || lo < 0) {
+                return null;
+            }
+            raw[i] = (byte) ((hi << 4) | lo);
+        }
+        return raw;
+    }
+
+    private static long toEpochMicros(@NotNull String timestamp) {
+        try {
+            // last_analyzed is a local time without zone; UTC just makes it a number
+            LocalDateTime time = LocalDateTime.parse(timestamp);
+            return ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), time);
+        } catch (DateTimeParseException e) {
+            return 0L;
+        }
+    }
+
+    private static @NotNull String fromEpochMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC)
+            .plus(micros, ChronoUnit.MICROS)
+            .format(FileMetadata.TIMESTAMP_FORMAT);
+    }
+}
@@ -0,0 +1,1043 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Java implementation of the Python ProjectAnalyzer change detection.
+ * Walks the project and hashes Python files in parallel on a ForkJoin pool,
+ * producing the same hash, size and imports metadata and change flags.
+ * Metadata is kept in a {@link BinaryMetadataStore} and exported to
+ * .pycompilecheck/metadata.json for the Python CLI, see
+ * {@link #exportJsonIfDirty}. Content snapshots in a
+ * {@link SnapshotStore} let content changes carry the changed line ranges.
+ * Each report carries the time spent listing directories and hashing files,
+ * summed over the pool's threads.
+ *
+ * <p>Files are only read when their stat data (mtime, size, inode) differs
+ * from the stored entry, or when they were modified within
+ * {@link #RACY_WINDOW_SECONDS} of their last analysis and could have changed
+ * again without a visible mtime change, as in git's racy-clean check. Read
+ * files are hashed with MurmurHash3; {@link #setVerifyHashes} switches to a
+ * full SHA-256 pass that ignores stat data.</p>
+ *
+ * <p>Walks prune excluded directories before descending into them, see
+ * {@link ExcludeMatcher}: virtualenvs, VCS and build directories, ignored
+ * paths and, in the plugin, the IDE's excluded roots.</p>
+ *
+ * <p>{@link #analyzeProjectInBackground} runs the same scan on a single
+ * low-priority thread that pauses after every batch of files, for
+ * verification passes that must not compete with the IDE. The headless CLI
+ * brings its own executor and listener to
+ * {@link #analyzeProject(Executor, Consumer, BooleanSupplier)}.</p>
+ *
+ * <p>{@link #analyzeGitIndex} replaces the walk with a read of .git/index
+ * and a stat sweep of the tracked Python files, see {@link GitIndex}.</p>
+ */
+public class ChangeDetectionEngine {
+
+    /** Files at least this large are memory-mapped; smaller ones are cheaper to read. */
+    private static final long MAP_THRESHOLD = 16 * 1024;
+    private static final int READ_BUFFER_SIZE = (int) MAP_THRESHOLD;
+    private static final int FILE_BATCH_SIZE = 16;
+    /** Covers the coarsest common mtime resolution (FAT's two seconds). */
+    static final double RACY_WINDOW_SECONDS = 2.0;
+    /** Longest pause of a background scan after one batch of files. */
+    private static final long MAX_BACKGROUND_PAUSE_MS = 50;
+
+    /** Read buffers kept for reuse; more readers than this allocate and drop their own. */
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    // Shared rather than per thread: the CLI reads every file on a virtual thread of its own
+    private static final BlockingQueue<ByteBuffer> READ_BUFFERS = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    private final Path projectRoot;
+    private final MetadataStore jsonStore;
+    private final ForkJoinPool pool;
+    private ForkJoinPool backgroundPool;
+    private BinaryMetadataStore store;
+    private SnapshotStore snapshots;
+    private ImportGraph importGraph;
+    private final GitIndexStore gitIndexStore;
+    // Reset at the start of every run; the methods that run the pool are synchronized
+    private final LongAdder walkNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder hashedFiles = new LongAdder();
+    // Files whose stored entry was kept without reading them
+    private final Set<String> statClean = ConcurrentHashMap.newKeySet();
+    // Files re-hashed with a new algorithm whose content matched the old hash
+    private final Set<String> rehashed = ConcurrentHashMap.newKeySet();
+    // Content of the files whose hash changed, kept from the scan so they aren't read again
+    private final Map<String, byte[]> changedContent = new ConcurrentHashMap<>();
+    // Line ranges already diffed for a streamed change
+    private final Map<String, int[]> diffedLines = new ConcurrentHashMap<>();
+    private volatile boolean throttled;
+    private volatile boolean verifyHashes;
+    // Set by every run, cleared when metadata.json is written
+    private boolean jsonDirty;
+    private volatile List<String> excludePatterns = List.of();
+    private volatile Collection<Path> excludedRoots = List.of();
+
+    public ChangeDetectionEngine(@NotNull Path projectRoot) {
+        this(projectRoot, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ChangeDetectionEngine(@NotNull Path projectRoot, int parallelism) {
+        this.projectRoot = projectRoot;
+        this.jsonStore = new MetadataStore(projectRoot);
+        this.pool = new ForkJoinPool(parallelism);
+        this.gitIndexStore = new GitIndexStore(projectRoot);
+    }
+
+    /**
+     * Scans the whole project, compares it with the stored metadata and
+     * replaces the stored metadata with the new scan.
+     */
+    public @NotNull ChangeReport analyzeProject() throws IOException {
+        return analyzeProject(() -> false);
+    }
+
+    /**
+     * Like {@link #analyzeProject()}, but gives up with a
+     * {@link CancellationException} once cancelled returns true. Cancellation
+     * is only checked while scanning, so the stored metadata is never left
+     * half updated.
+     */
+    public synchronized @NotNull ChangeReport analyzeProject(@NotNull BooleanSupplier cancelled) throws IOException {
+        return analyzeProject(pool, false, cancelled);
+    }
+
+    /**
+     * Like {@link #analyzeProject(BooleanSupplier)}, but scans on a single
+     * low-priority thread that sleeps after each batch of files for as long
+     * as the batch took, so the scan uses at most half a core. Unchanged
+     * files cost one stat call each, so this stays cheap when the stored
+     * metadata is current.
+     */
+    public synchronized @NotNull ChangeReport analyzeProjectInBackground(@NotNull BooleanSupplier cancelled)
+            throws IOException {
+        if (backgroundPool == null) {
+            backgroundPool = new ForkJoinPool(1, owner -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(owner);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }, null, false);
+        }
+        return analyzeProject(backgroundPool, true, cancelled);
+    }
+
+    private @NotNull ChangeReport analyzeProject(@NotNull ForkJoinPool workers, boolean throttled,
+                                                 @NotNull BooleanSupplier cancelled) throws IOException {
+        long start = System.currentTimeMillis();
+        BinaryMetadataStore store = openStore();
+        resetRunState();
+        this.throttled = throttled;
+
+        ConcurrentHashMap<String, FileMetadata> scanned = new ConcurrentHashMap<>();
+        workers.invoke(new DirectoryTask(projectRoot, loadExcludes(), scanned, cancelled));
+        checkCancelled(cancelled);
+        return replaceAll(store, new TreeMap<>(scanned), start);
+    }
+
+    /**
+     * Like {@link #analyzeProject(BooleanSupplier)}, but walks the project on
+     * the calling thread and hands every Python file to the given executor,
+     * which may block to bound how many files are read at once. Each change
+     * is passed to the listener as soon as its file is scanned, on the
+     * executor's threads, so callers can stream results before the scan
+     * ends. The stored metadata is only replaced once every file is done.
+     */
+    public synchronized @NotNull ChangeReport analyzeProject(@NotNull Executor executor,
+                                                             @NotNull Consumer<FileChange> listener,
+                                                             @NotNull BooleanSupplier cancelled) throws IOException {
+        long start = System.currentTimeMillis();
+        BinaryMetadataStore store = openStore();
+        resetRunState();
+
+        ConcurrentHashMap<String, FileMetadata> scanned = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        Deque<Listing> listings = new ArrayDeque<>();
+        listings.push(listDirectory(projectRoot, loadExcludes()));
+        while (!listings.isEmpty() && !cancelled.getAsBoolean()) {
+            Listing listing = listings.pop();
+            for (Path subdir : listing.subdirs) {
+                listings.push(listDirectory(subdir, listing.excludes));
+            }
+            for (Path file : listing.files) {
+                String relPath = projectRoot.relativize(file).toString();
+                if (relPath.contains(MetadataStore.METADATA_DIR)) {
+                    continue;
+                }
+                pending.add(CompletableFuture.runAsync(() -> {
+                    if (cancelled.getAsBoolean()) {
+                        return;
+                    }
+                    try {
+                        FileMetadata current = scanFile(file, relPath);
+                        scanned.put(relPath, current);
+                        FileChange change = compare(relPath, store.get(relPath), current);
+                        if (change != null) {
+                            listener.accept(change.isContentChanged() ? withChangedLines(change, current) : change);
+                        }
+                    } catch (IOException e) {
+                        // The file was removed or became unreadable during the walk
+                    }
+                }, executor));
+            }
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        checkCancelled(cancelled);
+        return replaceAll(store, new TreeMap<>(scanned), start);
+    }
+
+    /**
+     * Replaces the stored metadata with a full scan of the project.
+     */
+    private @NotNull ChangeReport replaceAll(@NotNull BinaryMetadataStore store,
+                                             @NotNull TreeMap<String, FileMetadata> current,
+                                             long start) throws IOException {
+        List<FileChange> changes = new ArrayList<>();
+        for (String path : new ArrayList<>(store.paths())) {
+            if (!current.containsKey(path)) {
+                store.remove(path);
+                snapshots.remove(path);
+                importGraph = null;
+            }
+        }
+        for (Map.Entry<String, FileMetadata> entry : current.entrySet()) {
+            update(store, entry.getKey(), entry.getValue(), changes);
+        }
+
+        jsonDirty = true;
+        return new ChangeReport(changes, current.size(), System.currentTimeMillis() - start,
+            store.nextGeneration(), walkNanos.sum(), hashNanos.sum(), hashedFiles.intValue());
+    }
+
+    /**
+     * Re-analyzes only the given paths and updates their entries in the
+     * stored metadata. Paths that no longer exist or are now excluded are
+     * removed, together with everything below them; directories are scanned
+     * recursively.
+     */
+    public @NotNull ChangeReport analyzePaths(@NotNull Collection<Path> paths) throws IOException {
+        return analyzePaths(paths, () -> false);
+    }
+
+    /**
+     * Like {@link #analyzePaths(Collection)}, but gives up with a
+     * {@link CancellationException} once cancelled returns true. All paths
+     * are scanned before the store is touched, so a cancelled run leaves the
+     * stored metadata as it was.
+     */
+    public synchronized @NotNull ChangeReport analyzePaths(@NotNull Collection<Path> paths,
+                                                           @NotNull BooleanSupplier cancelled) throws IOException {
+        long start = System.currentTimeMillis();
+        BinaryMetadataStore store = openStore();
+        resetRunState();
+        TreeMap<String, FileMetadata> scanned = new TreeMap<>();
+        List<String> removed = new ArrayList<>();
+        ExcludeMatcher excludes = loadExcludes();
+        Map<String, ExcludeMatcher> directories = new HashMap<>();
+
+        for (Path path : paths) {
+            checkCancelled(cancelled);
+            Path absolute = projectRoot.resolve(path).normalize();
+            if (!absolute.startsWith(projectRoot)) {
+                continue;
+            }
+            String relPath = projectRoot.relativize(absolute).toString();
+            if (relPath.isEmpty() || relPath.contains(MetadataStore.METADATA_DIR)) {
+                continue;
+            }
+
+            if (!Files.exists(absolute)) {
+                removed.add(relPath);
+                continue;
+            }
+            boolean directory = Files.isDirectory(absolute, LinkOption.NOFOLLOW_LINKS);
+            String slashPath = relPath.replace(projectRoot.getFileSystem().getSeparator(), "/");
+            int slash = slashPath.lastIndexOf('/');
+            ExcludeMatcher parentExcludes =
+                excludesFor(excludes, slash < 0 ? "" : slashPath.substring(0, slash), directories);
+            if (parentExcludes == null || parentExcludes.isExcluded(relPath, directory)) {
+                // Excluded since it was analyzed: drop it like a deleted path
+                if (directory || store.contains(relPath)) {
+                    removed.add(relPath);
+                }
+                continue;
+            }
+
+            if (directory) {
+                ConcurrentHashMap<String, FileMetadata> found = new ConcurrentHashMap<>();
+                pool.invoke(new DirectoryTask(absolute, parentExcludes, found, cancelled));
+                scanned.putAll(found);
+            } else if (Files.isRegularFile(absolute) && relPath.endsWith(".py")) {
+                scanned.put(relPath, scanFile(absolute, relPath));
+            }
+        }
+        checkCancelled(cancelled);
+
+        List<FileChange> changes = new ArrayList<>();
+        for (String relPath : removed) {
+            store.removeTree(relPath, projectRoot.getFileSystem().getSeparator());
+            snapshots.removeTree(relPath, projectRoot.getFileSystem().getSeparator());
+            importGraph = null;
+        }
+        for (Map.Entry<String, FileMetadata> entry : scanned.entrySet()) {
+            update(store, entry.getKey(), entry.getValue(), changes);
+        }
+
+        jsonDirty = true;
+        return new ChangeReport(changes, scanned.size(), System.currentTimeMillis() - start,
+            store.nextGeneration(), walkNanos.sum(), hashNanos.sum(), hashedFiles.intValue());
+    }
+
+    /**
+     * Finds the changed Python files from the Git index instead of walking
+     * the project, and analyzes only those with {@link #analyzePaths}.
+     * Tracked files are stat-checked against the index; a file that matches
+     * it is only a candidate when its blob id differs from the one it had at
+     * the last Git index run, which also catches files changed by a checkout
+     * or merge. Files that differ from the index, and stored files the index
+     * doesn't track, are handed over to be stat-checked against the stored
+     * metadata. Untracked files that were never analyzed are not found.
+     * Falls back to {@link #analyzeProject(BooleanSupplier)} when the project
+     * is not in a Git work tree or its index can't be read.
+     */
+    public synchronized @NotNull ChangeReport analyzeGitIndex(@NotNull BooleanSupplier cancelled) throws IOException {
+        GitIndex index;
+        try {
+            index = GitIndex.read(projectRoot);
+        } catch (IOException e) {
+            index = null;
+        }
+        if (index == null) {
+            return analyzeProject(cancelled);
+        }
+
+        BinaryMetadataStore store = openStore();
+        Map<String, byte[]> previous = gitIndexStore.getOids();
+        Map<String, byte[]> current = new HashMap<>();
+        Map<String, ExcludeMatcher> directories = new HashMap<>();
+        ExcludeMatcher excludes = loadExcludes();
+        String separator = projectRoot.getFileSystem().getSeparator();
+        List<Path> candidates = new ArrayList<>();
+        Set<String> tracked = new HashSet<>();
+
+        for (Map.Entry<String, GitIndex.Entry> entry : index.getEntries().entrySet()) {
+            checkCancelled(cancelled);
+            String path = entry.getKey();
+            int slash = path.lastIndexOf('/');
+            ExcludeMatcher parent = excludesFor(excludes, slash < 0 ? "" : path.substring(0, slash), directories);
+            if (parent == null || parent.isExcluded(path, false)) {
+                continue;
+            }
+            String relPath = path.replace("/", separator);
+            Path file = projectRoot.resolve(relPath);
+            tracked.add(relPath);
+
+            byte[] oid = entry.getValue().oid;
+            if (index.isClean(entry.getValue(), file)) {
+                current.put(path, oid);
+                if (Arrays.equals(oid, previous.get(path)) && store.contains(relPath)) {
+                    continue;
+                }
+            }
+            candidates.add(file);
+        }
+        for (String relPath : store.paths()) {
+            if (!tracked.contains(relPath)) {
+                // Deleted, untracked or excluded: analyzePaths drops it unless it is still an included file
+                candidates.add(projectRoot.resolve(relPath));
+            }
+        }
+
+        ChangeReport report = analyzePaths(candidates, cancelled);
+        gitIndexStore.save(current);
+        return report;
+    }
+
+    /**
+     * Returns the matcher for the entries of a directory below the root, with
+     * the .gitignore files of every directory above, or null if one of those
+     * directories is excluded or a virtualenv. For paths that didn't come
+     * from a walk; each directory is resolved once per run.
+     */
+    private @Nullable ExcludeMatcher excludesFor(@NotNull ExcludeMatcher root, @NotNull String relDir,
+                                                 @NotNull Map<String, ExcludeMatcher> directories) {
+        if (relDir.isEmpty()) {
+            return root;
+        }
+        if (directories.containsKey(relDir)) {
+            return directories.get(relDir);
+        }
+        int slash = relDir.lastIndexOf('/');
+        ExcludeMatcher parent = excludesFor(root, slash < 0 ? "" : relDir.substring(0, slash), directories);
+        Path dir = projectRoot.resolve(relDir);
+        ExcludeMatcher matcher = parent == null || parent.isExcluded(relDir, true)
+            || Files.exists(dir.resolve(ExcludeMatcher.VENV_MARKER))
+            ? null
+            : parent.withGitignore(dir, relDir);
+        directories.put(relDir, matcher);
+        return matcher;
+    }
+
+    /**
+     * When on, every file is read and hashed with SHA-256 regardless of its
+     * stat data, as a verification pass.
+     */
+    public void setVerifyHashes(boolean verifyHashes) {
+        this.verifyHashes = verifyHashes;
+    }
+
+    /**
+     * Extra exclude patterns in .gitignore syntax, on top of the defaults,
+     * .gitignore files and .pycompilecheckignore. Applied from the next run.
+     */
+    public void setExcludePatterns(@NotNull List<String> excludePatterns) {
+        this.excludePatterns = List.copyOf(excludePatterns);
+    }
+
+    /**
+     * Absolute directories never walked into, such as the IDE's excluded
+     * folders. Applied from the next run.
+     */
+    public void setExcludedRoots(@NotNull Collection<Path> excludedRoots) {
+        this.excludedRoots = List.copyOf(excludedRoots);
+    }
+
+    private @NotNull ExcludeMatcher loadExcludes() {
+        return ExcludeMatcher.load(projectRoot, excludePatterns, excludedRoots);
+    }
+
+    /**
+     * Writes the stored metadata to metadata.json so the Python CLI sees
+     * the plugin's latest state.
+     */
+    public synchronized void exportJson() throws IOException {
+        openStore().exportJson(jsonStore);
+        snapshots.save();
+        jsonDirty = false;
+    }
+
+    /**
+     * Like {@link #exportJson()}, but only if a run changed the stored
+     * metadata since the last export.
+     */
+    public synchronized void exportJsonIfDirty() throws IOException {
+        if (jsonDirty) {
+            exportJson();
+        }
+    }
+
+    /**
+     * Returns the import graph of the stored metadata, rebuilding it only
+     * after imports or the set of files changed.
+     */
+    public synchronized @NotNull ImportGraph getImportGraph() throws IOException {
+        BinaryMetadataStore store = openStore();
+        if (importGraph == null) {
+            Map<String, List<String>> importLines = new HashMap<>();
+            for (Map.Entry<String, FileMetadata> entry : store.toMap().entrySet()) {
+                importLines.put(entry.getKey(), entry.getValue().getImports());
+            }
+            importGraph = ImportGraph.build(importLines, projectRoot.getFileSystem().getSeparator());
+        }
+        return importGraph;
+    }
+
+    private void update(@NotNull BinaryMetadataStore store, @NotNull String relPath,
+                        @NotNull FileMetadata current, @NotNull List<FileChange> changes) throws IOException {
+        if (statClean.contains(relPath)) {
+            // current is the stored entry itself
+            return;
+        }
+        FileMetadata previous = store.get(relPath);
+        FileChange change = compare(relPath, previous, current);
+        store.put(relPath, current);
+        if (previous == null) {
+            importGraph = null;
+            // First sighting: keep the content as the baseline for later diffs
+            byte[] content = readSnapshotContent(relPath, current);
+            if (content != null) {
+                snapshots.put(relPath, content);
+            }
+            return;
+        }
+        if (change == null) {
+            return;
+        }
+        if (change.isImportsChanged()) {
+            importGraph = null;
+        }
+        if (change.isContentChanged()) {
+            // Diff against the snapshot, with the content the scan kept
+            byte[] kept = changedContent.remove(relPath);
+            byte[] content = kept != null ? kept : readSnapshotContent(relPath, current);
+            byte[] before = snapshots.get(relPath);
+            if (content != null) {
+                int[] lines = diffedLines.remove(relPath);
+                if (lines == null && before != null) {
+                    lines = LineDiff.changedLines(before, content);
+                }
+                if (lines != null) {
+                    change = change.withChangedLines(lines);
+                }
+                snapshots.put(relPath, content);
+            } else {
+                snapshots.remove(relPath);
+            }
+        }
+        changes.add(change);
+    }
+
+    /**
+     * Compares a scanned file with its stored entry. Runs on the pool
+     * threads while the store is only read.
+     */
+    private @Nullable FileChange compare(@NotNull String relPath, @Nullable FileMetadata previous,
+                                         @NotNull FileMetadata current) {
+        if (previous == null || statClean.contains(relPath)) {
+            return null;
+        }
+        if (rehashed.contains(relPath)) {
+            previous = previous.withHash(current.getHash(), current.getHashAlgorithm());
+        }
+        return FileChange.compare(relPath, previous, current);
+    }
+
+    /**
+     * Adds the changed line ranges of a content change, from the file's snapshot.
+     */
+    private @NotNull FileChange withChangedLines(@NotNull FileChange change, @NotNull FileMetadata current) {
+        byte[] kept = changedContent.get(change.getFile());
+        byte[] content = kept != null ? kept : readSnapshotContent(change.getFile(), current);
+        byte[] before = snapshots.get(change.getFile());
+        if (content == null || before == null) {
+            return change;
+        }
+        int[] lines = LineDiff.changedLines(before, content);
+        diffedLines.put(change.getFile(), lines);
+        return change.withChangedLines(lines);
+    }
+
+    private byte @Nullable [] readSnapshotContent(@NotNull String relPath, @NotNull FileMetadata metadata) {
+        if (metadata.getSize() > SnapshotStore.MAX_FILE_SIZE) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(projectRoot.resolve(relPath));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void resetRunState() {
+        walkNanos.reset();
+        hashNanos.reset();
+        hashedFiles.reset();
+        statClean.clear();
+        rehashed.clear();
+        changedContent.clear();
+        diffedLines.clear();
+        throttled = false;
+    }
+
+    /**
+     * Computes the metadata of one file for this run. Runs on the pool
+     * threads while the store is only read.
+     */
+    private @NotNull FileMetadata scanFile(@NotNull Path file, @NotNull String relPath) throws IOException {
+        FileMetadata previous = store.get(relPath);
+        Stat stat = Stat.of(file);
+        if (previous != null && !verifyHashes && isStatClean(previous, stat)) {
+            statClean.add(relPath);
+            return previous;
+        }
+
+        long hashStart = System.nanoTime();
+        String algorithm = verifyHashes ? FileMetadata.SHA256 : FileMetadata.MURMUR3_128;
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            ByteBuffer content = readContent(file, stat.size, buffer);
+            FileMetadata current = new FileMetadata(stat.lastModified, stat.size, stat.inode,
+                hash(content, algorithm), algorithm, detectImports(content),
+                LocalDateTime.now().format(FileMetadata.TIMESTAMP_FORMAT));
+
+            // Entries hashed with the other algorithm are compared by re-hashing the same content
+            if (previous != null && !previous.getHash().isEmpty()
+                && !previous.getHashAlgorithm().equals(algorithm)
+                && hash(content, previous.getHashAlgorithm()).equals(previous.getHash())) {
+                rehashed.add(relPath);
+            } else if (previous != null && !current.getHash().equals(previous.getHash())
+                && stat.size <= SnapshotStore.MAX_FILE_SIZE) {
+                // Its snapshot is diffed and replaced later; new files are read again then instead,
+                // so a first scan doesn't hold the whole project in memory
+                byte[] bytes = new byte[content.remaining()];
+                content.duplicate().get(bytes);
+                changedContent.put(relPath, bytes);
+            }
+            hashNanos.add(System.nanoTime() - hashStart);
+            hashedFiles.increment();
+            return current;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Whether a stored entry can be trusted without reading the file.
+     */
+    static boolean isStatClean(@NotNull FileMetadata previous, @NotNull Stat stat) {
+        if (previous.getHash().isEmpty() || previous.getSize() != stat.size
+            || previous.getLastModified() != stat.lastModified) {
+            return false;
+        }
+        // Inode 0 means unknown, e.g. written on a platform without inodes
+        if (previous.getInode() != 0 && stat.inode != 0 && previous.getInode() != stat.inode) {
+            return false;
+        }
+        try {
+            // last_analyzed is local time, like Python's datetime.now().isoformat()
+            Instant analyzed = LocalDateTime.parse(previous.getLastAnalyzed())
+                .atZone(ZoneId.systemDefault()).toInstant();
+            return stat.lastModified + RACY_WINDOW_SECONDS
+                < analyzed.getEpochSecond() + analyzed.getNano() * 1e-9;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static void checkCancelled(@NotNull BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Opens the binary store on first use, and picks up metadata.json
+     * whenever it was written by someone else (e.g. the Python CLI).
+     */
+    private @NotNull BinaryMetadataStore openStore() throws IOException {
+        if (store == null) {
+            store = BinaryMetadataStore.open(projectRoot);
+            snapshots = SnapshotStore.open(projectRoot);
+        }
+        if (store.syncFromJson(jsonStore)) {
+            importGraph = null;
+        }
+        return store;
+    }
+
+    /**
+     * Stops the worker pool, exports metadata.json, saves the content
+     * snapshots and closes the store.
+     */
+    public synchronized void shutdown() {
+        pool.shutdownNow();
+        if (backgroundPool != null) {
+            backgroundPool.shutdownNow();
+        }
+        if (store != null) {
+            try {
+                if (jsonDirty) {
+                    store.exportJson(jsonStore);
+                    jsonDirty = false;
+                }
+                snapshots.save();
+                store.close();
+            } catch (IOException e) {
+                // Nothing to report to at shutdown; the binary store is still intact
+            }
+            store = null;
+            snapshots = null;
+            importGraph = null;
+        }
+    }
+
+    /**
+     * Computes the metadata of a single Python file, like ProjectAnalyzer.analyze_file,
+     * hashing it with MurmurHash3.
+     */
+    public static @NotNull FileMetadata analyzeFile(@NotNull Path file) throws IOException {
+        return analyzeFile(file, FileMetadata.MURMUR3_128);
+    }
+
+    /**
+     * Computes the metadata of a single Python file with the given hash algorithm.
+     */
+    public static @NotNull FileMetadata analyzeFile(@NotNull Path file, @NotNull String algorithm) throws IOException {
+        Stat stat = Stat.of(file);
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            ByteBuffer content = readContent(file, stat.size, buffer);
+            return new FileMetadata(
+                stat.lastModified,
+                stat.size,
+                stat.inode,
+                hash(content, algorithm),
+                algorithm,
+                detectImports(content),
+                LocalDateTime.now().format(FileMetadata.TIMESTAMP_FORMAT)
+            );
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Hashes the remaining content as hex, without moving the buffer.
+     */
+    static @NotNull String hash(@NotNull ByteBuffer content, @NotNull String algorithm) {
+        switch (algorithm) {
+            case FileMetadata.MURMUR3_128:
+                return toHex(Murmur3.hash128(content));
+            case FileMetadata.SHA256:
+                MessageDigest digest;
+                try {
+                    // Cheap next to hashing a file, and nothing to keep per thread
+                    digest = MessageDigest.getInstance("SHA-256");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException("SHA-256 not available", e);
+                }
+                digest.update(content.duplicate());
+                return toHex(digest.digest());
+            default:
+                // Never equal to a stored hash, so the file counts as changed
+                return "";
+        }
+    }
+
+    /**
+     * Collects stripped lines starting with "import " or "from ", matching
+     * ProjectAnalyzer._detect_imports.
+     */
+    static @NotNull List<String> detectImports(@NotNull ByteBuffer content) {
+        List<String> imports = new ArrayList<>();
+        int limit = content.limit();
+        int pos = content.position();
+
+        while (pos < limit) {
+            int lineEnd = pos;
+            while (lineEnd < limit && content.get(lineEnd) != '\n' && content.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            int start = pos;
+            int end = lineEnd;
+            while (start < end && isWhitespace(content.get(start))) {
+                start++;
+            }
+            while (end > start && isWhitespace(content.get(end - 1))) {
+                end--;
+            }
+
+            if (startsWith(content, start, end, "import ") || startsWith(content, start, end, "from ")) {
+                String line = decodeLine(content, start, end);
+                if (line == null) {
+                    // Python stops reading imports at the first undecodable line
+                    break;
+                }
+                imports.add(line);
+            }
+            pos = lineEnd + 1;
+        }
+        return imports;
+    }
+
+    /**
+     * Reads a file into the given buffer, or maps it if it is large. The
+     * result is only valid until the buffer is released.
+     */
+    private static @NotNull ByteBuffer readContent(@NotNull Path file, long size,
+                                                   @NotNull ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            buffer.clear();
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // keep reading until EOF or the buffer is full
+            }
+            if (!buffer.hasRemaining() && channel.position() < channel.size()) {
+                // The file grew past the threshold while we were reading it
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static @NotNull ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = READ_BUFFERS.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(READ_BUFFER_SIZE);
+    }
+
+    private static void releaseBuffer(@NotNull ByteBuffer buffer) {
+        // Dropped if the pool is full
+        READ_BUFFERS.offer(buffer);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == 0x0b || b == 0x0c
+            || (b >= 0x1c && b <= 0x1f);
+    }
+
+    private static boolean startsWith(@NotNull ByteBuffer content, int start, int end, @NotNull String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (content.get(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static @Nullable String decodeLine(@NotNull ByteBuffer content, int start, int end) {
+        ByteBuffer slice = content.duplicate();
+        slice.limit(end).position(start);
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(slice)
+                .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    static @NotNull String toHex(byte @NotNull [] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * The stat data compared before deciding to read a file.
+     */
+    static final class Stat {
+        final long size;
+        final double lastModified;
+        final long inode;
+
+        Stat(long size, double lastModified, long inode) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.inode = inode;
+        }
+
+        static @NotNull Stat of(@NotNull Path file) throws IOException {
+            if (file.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+                // One stat call for all three
+                Map<String, Object> attrs = Files.readAttributes(file, "unix:size,lastModifiedTime,ino");
+                return new Stat((Long) attrs.get("size"), toSeconds((FileTime) attrs.get("lastModifiedTime")),
+                    (Long) attrs.get("ino"));
+            }
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return new Stat(attrs.size(), toSeconds(attrs.lastModifiedTime()), 0L);
+        }
+
+        /**
+         * Same float seconds as os.stat().st_mtime, which CPython computes as
+         * sec + nsec * 1e-9, so entries written by either side compare equal.
+         */
+        private static double toSeconds(@NotNull FileTime time) {
+            Instant instant = time.toInstant();
+            return instant.getEpochSecond() + instant.getNano() * 1e-9;
+        }
+    }
+
+    /**
+     * Lists the Python files and subdirectories of one directory that are
+     * not excluded, like one step of os.walk with pruning. Virtualenvs and
+     * unreadable directories yield nothing.
+     */
+    private @NotNull Listing listDirectory(@NotNull Path dir, @NotNull ExcludeMatcher excludes) {
+        List<Path> files = new ArrayList<>();
+        List<Path> subdirs = new ArrayList<>();
+        boolean gitignore = false;
+        boolean virtualenv = false;
+
+        long walkStart = System.nanoTime();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                // Like os.walk, descend into real directories only
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    subdirs.add(entry);
+                } else if (name.endsWith(".py")) {
+                    files.add(entry);
+                } else if (name.equals(ExcludeMatcher.GITIGNORE)) {
+                    gitignore = true;
+                } else if (name.equals(ExcludeMatcher.VENV_MARKER)) {
+                    virtualenv = true;
+                }
+            }
+        } catch (IOException e) {
+            // Unreadable directories are skipped, like os.walk does
+            return new Listing(List.of(), List.of(), excludes);
+        } finally {
+            walkNanos.add(System.nanoTime() - walkStart);
+        }
+
+        String relDir = projectRoot.relativize(dir).toString();
+        if (virtualenv && !relDir.isEmpty()) {
+            return new Listing(List.of(), List.of(), excludes);
+        }
+        if (gitignore && !relDir.isEmpty()) {
+            // The root .gitignore is part of every matcher already
+            excludes = excludes.withGitignore(dir, relDir);
+        }
+        ExcludeMatcher matcher = excludes;
+        subdirs.removeIf(subdir -> matcher.isExcluded(projectRoot.relativize(subdir).toString(), true));
+        files.removeIf(file -> matcher.isExcluded(projectRoot.relativize(file).toString(), false));
+        return new Listing(files, subdirs, excludes);
+    }
+
+    /**
+     * The walkable entries of one directory, and the exclude rules for
+     * the entries of its subdirectories.
+     */
+    private static final class Listing {
+        final List<Path> files;
+        final List<Path> subdirs;
+        final ExcludeMatcher excludes;
+
+        Listing(@NotNull List<Path> files, @NotNull List<Path> subdirs, @NotNull ExcludeMatcher excludes) {
+            this.files = files;
+            this.subdirs = subdirs;
+            this.excludes = excludes;
+        }
+    }
+
+    /**
+     * Walks one directory, forking a task per subdirectory and batching its Python files.
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private final Path dir;
+        private final ExcludeMatcher excludes;
+        private final Map<String, FileMetadata> out;
+        private final BooleanSupplier cancelled;
+
+        DirectoryTask(@NotNull Path dir, @NotNull ExcludeMatcher excludes, @NotNull Map<String, FileMetadata> out,
+                      @NotNull BooleanSupplier cancelled) {
+            this.dir = dir;
+            this.excludes = excludes;
+            this.out = out;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            List<RecursiveAction> subtasks = new ArrayList<>();
+            Listing listing = listDirectory(dir, excludes);
+            for (Path subdir : listing.subdirs) {
+                subtasks.add(new DirectoryTask(subdir, listing.excludes, out, cancelled));
+            }
+            List<Path> files = listing.files;
+            for (int i = 0; i < files.size(); i += FILE_BATCH_SIZE) {
+                subtasks.add(new FileBatchTask(files.subList(i, Math.min(i + FILE_BATCH_SIZE, files.size())), out, cancelled));
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    private class FileBatchTask extends RecursiveAction {
+        private final List<Path> files;
+        private final Map<String, FileMetadata> out;
+        private final BooleanSupplier cancelled;
+
+        FileBatchTask(@NotNull List<Path> files, @NotNull Map<String, FileMetadata> out,
+                      @NotNull BooleanSupplier cancelled) {
+            this.files = files;
+            this.out = out;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            long batchStart = System.nanoTime();
+            for (Path file : files) {
+                // The caller checks again after the walk and discards the partial scan
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                String relPath = projectRoot.relativize(file).toString();
+
+                // Skip metadata directory
+                if (relPath.contains(MetadataStore.METADATA_DIR)) {
+                    continue;
+                }
+
+                try {
+                    out.put(relPath, scanFile(file, relPath));
+                } catch (IOException e) {
+                    // The file was removed or became unreadable during the walk
+                }
+            }
+
+            if (throttled) {
+                long pauseMillis = Math.min((System.nanoTime() - batchStart) / 1_000_000, MAX_BACKGROUND_PAUSE_MS);
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    // The pool is shutting down
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
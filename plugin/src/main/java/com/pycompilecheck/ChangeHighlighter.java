@@ -0,0 +1,230 @@
+package com.pycompilecheck;
+
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiNameIdentifierOwner;
+import com.jetbrains.python.psi.PyFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the changes of one file in a {@link PyCompileCheckResult} into
+ * highlighted ranges: red for changed lines, yellow for imports, changed
+ * signatures and changed dependencies, and file-level information for the
+ * rest. Shared by the editor annotator and the batch inspection, which
+ * render them as annotations and problem descriptors respectively.
+ */
+final class ChangeHighlighter {
+
+    /**
+     * Receives the indicators; a null range means the whole file.
+     */
+    interface Sink {
+        void add(@Nullable TextRange range, @NotNull String message, @NotNull ProblemHighlightType type);
+    }
+
+    private ChangeHighlighter() {
+    }
+
+    /**
+     * Reports the indicators of one file's changes in the given result.
+     * Needs read access, and the result must have changes for the file.
+     */
+    static void collect(@NotNull PsiFile file, @NotNull PyCompileCheckResult result, @NotNull Sink sink) {
+        
+        VirtualFile virtualFile = file.getVirtualFile();
+        String filePath = virtualFile.getPath();
+        
+        // Underline just the changed lines when the engine could diff the file
+        int[] lines = result.getChangedLines(filePath);
+        Document document = lines != null && lines.length > 0
+            ? PsiDocumentManager.getInstance(file.getProject()).getDocument(file)
+            : null;
+        
+        if (result.hasContentChanges(filePath)) {
+            if (document != null) {
+                // Add red underline for each changed range
+                for (int i = 0; i < lines.length; i += 2) {
+                    String message = lines[i] == lines[i + 1]
+                        ? "Lines removed - PyCompileCheck detected changes"
+                        : "Content modified - PyCompileCheck detected changes";
+                    sink.add(lineRange(document, lines[i], lines[i + 1]), message, ProblemHighlightType.ERROR);
+                }
+            } else {
+                // Add red underline for content changes
+                sink.add(null, "Content modified - PyCompileCheck detected changes", ProblemHighlightType.ERROR);
+            }
+        }
+        
+        if (result.hasImportChanges(filePath)) {
+            if (document != null) {
+                // Add yellow underline for the changed import statements
+                for (TextRange range : changedImportRanges(document, lines)) {
+                    sink.add(range, "Imports modified - PyCompileCheck detected import changes",
+                        ProblemHighlightType.WEAK_WARNING);
+                }
+            } else {
+                // Add yellow underline for import changes
+                sink.add(null, "Imports modified - PyCompileCheck detected import changes",
+                    ProblemHighlightType.WEAK_WARNING);
+            }
+        }
+        
+        List<SymbolChange> symbolChanges = result.getSymbolChanges(filePath);
+        if (!symbolChanges.isEmpty() && file instanceof PyFile) {
+            addSymbolIndicators((PyFile) file, sink, symbolChanges);
+        }
+        
+        String dependencyCause = result.getDependencyCause(filePath);
+        if (result.hasDependencyChanges(filePath) && dependencyCause != null) {
+            addDependencyIndicators(file, sink, dependencyCause);
+        }
+        
+        if (result.hasSizeChanges(filePath)) {
+            // Add info indicator for size changes
+            String sizeInfo = result.getSizeChangeInfo(filePath);
+            sink.add(null, "File size changed: " + sizeInfo, ProblemHighlightType.INFORMATION);
+        }
+    }
+
+    private static void addSymbolIndicators(@NotNull PyFile file,
+                                            @NotNull Sink sink,
+                                            @NotNull List<SymbolChange> changes) {
+        
+        Map<String, PsiNameIdentifierOwner> symbols = StructureIndexer.findSymbols(file);
+        for (SymbolChange change : changes) {
+            if (change.getType() == SymbolChange.Type.REMOVED) {
+                // Nothing left to point at; report it for the file
+                sink.add(null, change.getDescription(), ProblemHighlightType.INFORMATION);
+                continue;
+            }
+            if (change.getType() == SymbolChange.Type.BODY) {
+                // Body edits are already underlined line by line
+                continue;
+            }
+            
+            PsiNameIdentifierOwner symbol = symbols.get(change.getName());
+            PsiElement nameIdentifier = symbol != null ? symbol.getNameIdentifier() : null;
+            if (nameIdentifier != null) {
+                // Add yellow underline on the name of a function or class whose signature changed
+                sink.add(nameIdentifier.getTextRange(), change.getDescription(), ProblemHighlightType.WARNING);
+            }
+        }
+    }
+
+    private static void addDependencyIndicators(@NotNull PsiFile file,
+                                                @NotNull Sink sink,
+                                                @NotNull String cause) {
+        
+        String module = moduleName(cause);
+        String message = "Imported module " + module + " changed its public interface - re-check usages";
+        String lastPart = module.substring(module.lastIndexOf('.') + 1);
+        
+        // Add yellow underline on the import statements that bring the module in
+        boolean found = false;
+        Document document = PsiDocumentManager.getInstance(file.getProject()).getDocument(file);
+        if (document != null) {
+            CharSequence text = document.getCharsSequence();
+            for (int line = 0; line < document.getLineCount(); line++) {
+                int start = document.getLineStartOffset(line);
+                int end = document.getLineEndOffset(line);
+                String stripped = text.subSequence(start, end).toString().trim();
+                if ((stripped.startsWith("import ") || stripped.startsWith("from "))
+                    && containsWord(stripped, lastPart)) {
+                    sink.add(new TextRange(start, end), message, ProblemHighlightType.WEAK_WARNING);
+                    found = true;
+                }
+            }
+        }
+        
+        if (!found) {
+            // e.g. a relative "from . import *"; report it for the file
+            sink.add(null, message, ProblemHighlightType.INFORMATION);
+        }
+    }
+
+    /**
+     * Dotted module name of a project-relative path, e.g. "app.models" for
+     * app/models.py or "app" for app/__init__.py.
+     */
+    private static @NotNull String moduleName(@NotNull String relPath) {
+        String module = relPath.replace('\\', '/');
+        if (module.endsWith("/__init__.py")) {
+            module = module.substring(0, module.length() - "/__init__.py".length());
+        } else if (module.endsWith(".py")) {
+            module = module.substring(0, module.length() - ".py".length());
+        }
+        return module.replace('/', '.');
+    }
+
+    private static boolean containsWord(@NotNull String text, @NotNull String word) {
+        int from = 0;
+        int at;
+        while ((at = text.indexOf(word, from)) >= 0) {
+            int end = at + word.length();
+            boolean startOk = at == 0 || !Character.isJavaIdentifierPart(text.charAt(at - 1));
+            boolean endOk = end == text.length() || !Character.isJavaIdentifierPart(text.charAt(end));
+            if (startOk && endOk) {
+                return true;
+            }
+            from = end;
+        }
+        return false;
+    }
+
+    /**
+     * Text range covering [startLine, endLine) of the document. An empty
+     * range, where lines were only removed, covers the line that follows.
+     * Line numbers come from the file on disk, so they are clamped to what
+     * the document has now.
+     */
+    private static @NotNull TextRange lineRange(@NotNull Document document, int startLine, int endLine) {
+        int lineCount = Math.max(1, document.getLineCount());
+        int first = Math.min(startLine, lineCount - 1);
+        int last = Math.max(first, Math.min(endLine, lineCount) - 1);
+
+        int start = document.getLineStartOffset(first);
+        int end = document.getLineEndOffset(last);
+        if (end == start && end < document.getTextLength()) {
+            // Keep blank lines visible by including the line break
+            end++;
+        }
+        return new TextRange(start, end);
+    }
+
+    /**
+     * Ranges of the import lines inside the changed ranges. If the changed
+     * ranges contain no import line, e.g. because imports were only removed,
+     * the first changed range is returned instead.
+     */
+    private static @NotNull List<TextRange> changedImportRanges(@NotNull Document document, int @NotNull [] lines) {
+        List<TextRange> ranges = new ArrayList<>();
+        CharSequence text = document.getCharsSequence();
+        int lineCount = document.getLineCount();
+        
+        for (int i = 0; i < lines.length; i += 2) {
+            for (int line = lines[i]; line < lines[i + 1] && line < lineCount; line++) {
+                int start = document.getLineStartOffset(line);
+                int end = document.getLineEndOffset(line);
+                String stripped = text.subSequence(start, end).toString().trim();
+                if (stripped.startsWith("import ") || stripped.startsWith("from ")) {
+                    ranges.add(new TextRange(start, end));
+                }
+            }
+        }
+        
+        if (ranges.isEmpty()) {
+            ranges.add(lineRange(document, lines[0], lines[1]));
+        }
+        return ranges;
+    }
+}
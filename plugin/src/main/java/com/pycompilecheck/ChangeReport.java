@@ -0,0 +1,77 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Outcome of one change detection run.
+ */
+public class ChangeReport {
+    private final List<FileChange> changes;
+    private final int fileCount;
+    private final long durationMillis;
+    private final long generation;
+    private final long walkNanos;
+    private final long hashNanos;
+    private final int hashedFileCount;
+
+    public ChangeReport(@NotNull List<FileChange> changes, int fileCount, long durationMillis, long generation) {
+        this(changes, fileCount, durationMillis, generation, 0, 0, fileCount);
+    }
+
+    public ChangeReport(@NotNull List<FileChange> changes, int fileCount, long durationMillis, long generation,
+                        long walkNanos, long hashNanos, int hashedFileCount) {
+        this.changes = changes;
+        this.fileCount = fileCount;
+        this.durationMillis = durationMillis;
+        this.generation = generation;
+        this.walkNanos = walkNanos;
+        this.hashNanos = hashNanos;
+        this.hashedFileCount = hashedFileCount;
+    }
+
+    public @NotNull List<FileChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Number of Python files covered by the run.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Time spent listing directories, summed over all scanning threads.
+     */
+    public long getWalkNanos() {
+        return walkNanos;
+    }
+
+    /**
+     * Time spent reading and hashing files, summed over all scanning threads.
+     */
+    public long getHashNanos() {
+        return hashNanos;
+    }
+
+    /**
+     * Number of files that were read and hashed; the rest were unchanged
+     * according to their stat data.
+     */
+    public int getHashedFileCount() {
+        return hashedFileCount;
+    }
+
+    /**
+     * Metadata generation written by this run.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+}
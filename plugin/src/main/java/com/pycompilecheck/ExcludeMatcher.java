@@ -0,0 +1,278 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which directories and files a project walk skips, so virtualenvs,
+ * VCS metadata and build output are pruned before they are descended into.
+ *
+ * <p>Rules use .gitignore syntax and the last matching rule wins. They come
+ * from {@link #DEFAULT_EXCLUDES}, .git/info/exclude and the .gitignore files
+ * met during the walk, and are overridden by {@link #IGNORE_FILE} and
+ * patterns passed in by the caller, so <code>!build/</code> there brings a
+ * first-party build package back. Directories holding a pyvenv.cfg are
+ * virtualenvs whatever their name. main.py's ExcludeMatcher compiles the
+ * same rules, so both walks see the same files.</p>
+ */
+public final class ExcludeMatcher {
+
+    /** Project-level exclude patterns, in .gitignore syntax. */
+    public static final String IGNORE_FILE = ".pycompilecheckignore";
+    static final String GITIGNORE = ".gitignore";
+    static final String VENV_MARKER = "pyvenv.cfg";
+
+    static final List<String> DEFAULT_EXCLUDES = List.of(
+        ".git/", ".hg/", ".svn/", MetadataStore.METADATA_DIR + "/",
+        ".venv/", "venv/", "site-packages/", "node_modules/", "__pycache__/",
+        ".tox/", ".nox/", ".mypy_cache/", ".pytest_cache/", ".eggs/", "*.egg-info/",
+        "build/", "dist/"
+    );
+
+    private final List<Rule> rules;
+    private final List<Rule> overrides;
+    private final Set<String> excludedDirs;
+
+    private ExcludeMatcher(@NotNull List<Rule> rules, @NotNull List<Rule> overrides, @NotNull Set<String> excludedDirs) {
+        this.rules = rules;
+        this.overrides = overrides;
+        this.excludedDirs = excludedDirs;
+    }
+
+    /**
+     * Compiles the rules of a project: the defaults, .git/info/exclude, the
+     * root .gitignore, .pycompilecheckignore and the given extra patterns.
+     * Excluded roots are absolute directories pruned outright, e.g. the
+     * IDE's excluded folders.
+     */
+    public static @NotNull ExcludeMatcher load(@NotNull Path projectRoot, @NotNull List<String> extraPatterns,
+                                               @NotNull Collection<Path> excludedRoots) {
+        List<Rule> rules = new ArrayList<>();
+        addRules(rules, DEFAULT_EXCLUDES, "");
+        addRules(rules, readLines(projectRoot.resolve(".git").resolve("info").resolve("exclude")), "");
+        addRules(rules, readLines(projectRoot.resolve(GITIGNORE)), "");
+
+        List<Rule> overrides = new ArrayList<>();
+        addRules(overrides, readLines(projectRoot.resolve(IGNORE_FILE)), "");
+        addRules(overrides, extraPatterns, "");
+
+        Set<String> excludedDirs = new HashSet<>();
+        Path normalizedRoot = projectRoot.toAbsolutePath().normalize();
+        for (Path root : excludedRoots) {
+            Path absolute = root.toAbsolutePath().normalize();
+            if (absolute.startsWith(normalizedRoot) && !absolute.equals(normalizedRoot)) {
+                excludedDirs.add(toRelative(normalizedRoot.relativize(absolute).toString()));
+            }
+        }
+        return new ExcludeMatcher(rules, overrides, excludedDirs);
+    }
+
+    /**
+     * Returns the matcher for the entries of a directory below the root,
+     * adding the rules of its .gitignore.
+     */
+    public @NotNull ExcludeMatcher withGitignore(@NotNull Path dir, @NotNull String relDir) {
+        List<String> lines = readLines(dir.resolve(GITIGNORE));
+        if (lines.isEmpty()) {
+            return this;
+        }
+        List<Rule> nested = new ArrayList<>(rules);
+        addRules(nested, lines, toRelative(relDir));
+        return new ExcludeMatcher(nested, overrides, excludedDirs);
+    }
+
+    /**
+     * Whether a file or directory, by path relative to the project root, is
+     * excluded. Its parent directories are assumed to be included.
+     */
+    public boolean isExcluded(@NotNull String relPath, boolean directory) {
+        String path = toRelative(relPath);
+        if (directory && excludedDirs.contains(path)) {
+            return true;
+        }
+        Boolean excluded = match(overrides, path, directory);
+        if (excluded == null) {
+            excluded = match(rules, path, directory);
+        }
+        return excluded != null && excluded;
+    }
+
+    private static @Nullable Boolean match(@NotNull List<Rule> rules, @NotNull String path, boolean directory) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            if (rule.matches(path, name, directory)) {
+                return !rule.negated;
+            }
+        }
+        return null;
+    }
+
+    private static void addRules(@NotNull List<Rule> rules, @NotNull List<String> lines, @NotNull String base) {
+        for (String line : lines) {
+            Rule rule = Rule.parse(line, base);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+    }
+
+    private static @NotNull List<String> readLines(@NotNull Path file) {
+        try {
+            return Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Missing or unreadable ignore files add no rules
+            return List.of();
+        }
+    }
+
+    private static @NotNull String toRelative(@NotNull String path) {
+        return path.replace('\\', '/');
+    }
+
+    /**
+     * One compiled .gitignore line. Patterns without a slash match the name
+     * at any depth; the others match the path below the base directory.
+     */
+    static final class Rule {
+        final String basePrefix;
+        final boolean negated;
+        final boolean directoryOnly;
+        final boolean anchored;
+        final @Nullable String literal;
+        final @Nullable Pattern pattern;
+
+        private Rule(@NotNull String base, boolean negated, boolean directoryOnly, boolean anchored,
+                     @Nullable String literal, @Nullable Pattern pattern) {
+            this.basePrefix = base.isEmpty() ? "" : base + "/";
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.anchored = anchored;
+            this.literal = literal;
+            this.pattern = pattern;
+        }
+
+        static @Nullable Rule parse(@NotNull String line, @NotNull String base) {
+            String text = stripTrailingSpaces(line);
+            if (text.isEmpty() || text.startsWith("#")) {
+                return null;
+            }
+            boolean negated = text.startsWith("!");
+            if (negated || text.startsWith("\\!") || text.startsWith("\\#")) {
+                text = text.substring(1);
+            }
+            boolean directoryOnly = text.endsWith("/");
+            if (directoryOnly) {
+                text = text.substring(0, text.length() - 1);
+            }
+            boolean anchored = text.contains("/");
+            if (text.startsWith("/")) {
+                text = text.substring(1);
+            }
+            if (text.isEmpty()) {
+                return null;
+            }
+
+            boolean wildcard = text.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '\\');
+            return wildcard
+                ? new Rule(base, negated, directoryOnly, anchored, null, Pattern.compile(toRegex(text)))
+                : new Rule(base, negated, directoryOnly, anchored, text, null);
+        }
+
+        boolean matches(@NotNull String path, @NotNull String name, boolean directory) {
+            if (directoryOnly && !directory) {
+                return false;
+            }
+            if (!path.startsWith(basePrefix)) {
+                return false;
+            }
+            String subject = anchored ? path.substring(basePrefix.length()) : name;
+            return literal != null ? literal.equals(subject) : pattern.matcher(subject).matches();
+        }
+
+        /**
+         * Translates a glob to a regex the same way main.py does, so both
+         * compile identical patterns.
+         */
+        static @NotNull String toRegex(@NotNull String glob) {
+            StringBuilder regex = new StringBuilder();
+            int i = 0;
+            int length = glob.length();
+            while (i < length) {
+                char c = glob.charAt(i);
+                if (c == '*') {
+                    boolean atSegmentStart = i == 0 || glob.charAt(i - 1) == '/';
+                    if (i + 1 < length && glob.charAt(i + 1) == '*' && atSegmentStart) {
+                        if (i + 2 == length) {
+                            regex.append(".*");
+                            i += 2;
+                            continue;
+                        }
+                        if (glob.charAt(i + 2) == '/') {
+                            regex.append("(?:.*/)?");
+                            i += 3;
+                            continue;
+                        }
+                    }
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else if (c == '[') {
+                    // A ']' right after the opening or the negation is part of the class
+                    boolean negated = i + 1 < length && (glob.charAt(i + 1) == '!' || glob.charAt(i + 1) == '^');
+                    int start = negated ? i + 2 : i + 1;
+                    int end = glob.indexOf(']', start + 1);
+                    if (end < 0) {
+                        regex.append("\\[");
+                    } else {
+                        // Like git, a negated class doesn't match the separator
+                        String body = glob.substring(start, end);
+                        regex.append(negated ? "[^/" : "[");
+                        for (int j = 0; j < body.length(); j++) {
+                            // Literal in the class, but nested classes or intersections to java.util.regex
+                            if ("\\[]&".indexOf(body.charAt(j)) >= 0) {
+                                regex.append('\\');
+                            }
+                            regex.append(body.charAt(j));
+                        }
+                        regex.append(']');
+                        i = end;
+                    }
+                } else if (c == '\\' && i + 1 < length) {
+                    i++;
+                    appendLiteral(regex, glob.charAt(i));
+                } else {
+                    appendLiteral(regex, c);
+                }
+                i++;
+            }
+            return regex.toString();
+        }
+
+        private static void appendLiteral(@NotNull StringBuilder regex, char c) {
+            if (".^$+{}()|[]\\*?".indexOf(c) >= 0) {
+                regex.append('\\');
+            }
+            regex.append(c);
+        }
+
+        private static @NotNull String stripTrailingSpaces(@NotNull String line) {
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) {
+                end--;
+            }
+            return line.substring(0, end);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Change flags for one file, relative to the previously stored metadata.
+ */
+public class FileChange {
+    private final String file;
+    private final boolean contentChanged;
+    private final boolean importsChanged;
+    private final boolean sizeChanged;
+    private final String sizeChangeInfo;
+    private final int[] changedLines;
+
+    public FileChange(@NotNull String file, boolean contentChanged, boolean importsChanged,
+                      boolean sizeChanged, @NotNull String sizeChangeInfo) {
+        this(file, contentChanged, importsChanged, sizeChanged, sizeChangeInfo, null);
+    }
+
+    public FileChange(@NotNull String file, boolean contentChanged, boolean importsChanged,
+                      boolean sizeChanged, @NotNull String sizeChangeInfo, int @Nullable [] changedLines) {
+        this.file = file;
+        this.contentChanged = contentChanged;
+        this.importsChanged = importsChanged;
+        this.sizeChanged = sizeChanged;
+        this.sizeChangeInfo = sizeChangeInfo;
+        this.changedLines = changedLines;
+    }
+
+    /**
+     * Returns a copy of this change with the given changed line ranges.
+     */
+    public @NotNull FileChange withChangedLines(int @Nullable [] changedLines) {
+        return new FileChange(file, contentChanged, importsChanged, sizeChanged, sizeChangeInfo, changedLines);
+    }
+
+    /**
+     * Compares two metadata entries the same way ProjectAnalyzer.analyze_project
+     * does, returning null when nothing changed. Hashes made with different
+     * algorithms count as a content change; the engine re-hashes such files
+     * with the previous algorithm before comparing.
+     */
+    public static @Nullable FileChange compare(@NotNull String file,
+                                               @NotNull FileMetadata previous,
+                                               @NotNull FileMetadata current) {
+        boolean content = !previous.getHash().equals(current.getHash())
+            || !previous.getHashAlgorithm().equals(current.getHashAlgorithm());
+        boolean size = previous.getSize() != current.getSize();
+        boolean imports = !previous.getImports().equals(current.getImports());
+
+        if (!content && !size && !imports) {
+            return null;
+        }
+
+        String sizeInfo = size ? "from " + previous.getSize() + " to " + current.getSize() + " bytes" : "";
+        return new FileChange(file, content, imports, size, sizeInfo);
+    }
+
+    /**
+     * Path relative to the project root.
+     */
+    public @NotNull String getFile() {
+        return file;
+    }
+
+    public boolean isContentChanged() {
+        return contentChanged;
+    }
+
+    public boolean isImportsChanged() {
+        return importsChanged;
+    }
+
+    public boolean isSizeChanged() {
+        return sizeChanged;
+    }
+
+    public @NotNull String getSizeChangeInfo() {
+        return sizeChangeInfo;
+    }
+
+    /**
+     * Changed lines as flattened [startLine, endLine) pairs, 0-based, or null
+     * if no earlier content was available to diff against.
+     */
+    public int @Nullable [] getChangedLines() {
+        return changedLines;
+    }
+}
@@ -0,0 +1,84 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Metadata stored for a single Python file in .pycompilecheck/metadata.json.
+ * Field names match the keys written by the Python ProjectAnalyzer.
+ * Entries written before hash_algorithm existed hold a SHA-256 hash.
+ */
+public class FileMetadata {
+    /** Same format as Python's datetime.isoformat() with microseconds. */
+    static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
+
+    static final String SHA256 = "sha256";
+    static final String MURMUR3_128 = "murmur3_128";
+
+    final double last_modified;
+    final long size;
+    final long inode;
+    final String hash;
+    final String hash_algorithm;
+    final List<String> imports;
+    final String last_analyzed;
+
+    public FileMetadata(double lastModified, long size, @NotNull String hash,
+                        @NotNull List<String> imports, @NotNull String lastAnalyzed) {
+        this(lastModified, size, 0L, hash, SHA256, imports, lastAnalyzed);
+    }
+
+    public FileMetadata(double lastModified, long size, long inode, @NotNull String hash,
+                        @NotNull String hashAlgorithm, @NotNull List<String> imports, @NotNull String lastAnalyzed) {
+        this.last_modified = lastModified;
+        this.size = size;
+        this.inode = inode;
+        this.hash = hash;
+        this.hash_algorithm = hashAlgorithm;
+        this.imports = imports;
+        this.last_analyzed = lastAnalyzed;
+    }
+
+    /**
+     * Returns a copy of this entry with another content hash.
+     */
+    public @NotNull FileMetadata withHash(@NotNull String hash, @NotNull String hashAlgorithm) {
+        return new FileMetadata(last_modified, size, inode, hash, hashAlgorithm, imports, last_analyzed);
+    }
+
+    public double getLastModified() {
+        return last_modified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Inode number of the file, or 0 if unknown.
+     */
+    public long getInode() {
+        return inode;
+    }
+
+    public @NotNull String getHash() {
+        return hash;
+    }
+
+    /**
+     * Algorithm of {@link #getHash()}: {@link #SHA256} or {@link #MURMUR3_128}.
+     */
+    public @NotNull String getHashAlgorithm() {
+        return hash_algorithm;
+    }
+
+    public @NotNull List<String> getImports() {
+        return imports;
+    }
+
+    public @NotNull String getLastAnalyzed() {
+        return last_analyzed;
+    }
+}
@@ -0,0 +1,113 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Function and class fingerprints of one file, with the file stamp they
+ * were computed from.
+ */
+public class FileStructure {
+
+    private final long fileStamp;
+    private final long length;
+    private final Map<String, SymbolFingerprint> symbols = new LinkedHashMap<>();
+    // PSI modification stamps are only meaningful within one IDE session
+    private long psiStamp = -1;
+
+    public FileStructure(long fileStamp, long length, @NotNull Collection<SymbolFingerprint> symbols) {
+        this.fileStamp = fileStamp;
+        this.length = length;
+        for (SymbolFingerprint symbol : symbols) {
+            this.symbols.put(symbol.getName(), symbol);
+        }
+    }
+
+    /**
+     * Timestamp of the file on disk when it was fingerprinted.
+     */
+    public long getFileStamp() {
+        return fileStamp;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getPsiStamp() {
+        return psiStamp;
+    }
+
+    public void setPsiStamp(long psiStamp) {
+        this.psiStamp = psiStamp;
+    }
+
+    /**
+     * Symbols in source order.
+     */
+    public @NotNull Collection<SymbolFingerprint> getSymbols() {
+        return Collections.unmodifiableCollection(symbols.values());
+    }
+
+    public @Nullable SymbolFingerprint getSymbol(@NotNull String name) {
+        return symbols.get(name);
+    }
+
+    /**
+     * Compares with an earlier fingerprint of the same file. Returns nothing
+     * if there is no earlier fingerprint to compare with.
+     */
+    public @NotNull List<SymbolChange> changesSince(@Nullable FileStructure previous) {
+        List<SymbolChange> changes = new ArrayList<>();
+        if (previous == null) {
+            return changes;
+        }
+
+        for (SymbolFingerprint symbol : symbols.values()) {
+            SymbolFingerprint before = previous.symbols.get(symbol.getName());
+            SymbolChange.Type type = null;
+            if (before == null || before.getKind() != symbol.getKind()) {
+                type = SymbolChange.Type.ADDED;
+            } else if (before.getSignatureHash() != symbol.getSignatureHash()) {
+                type = SymbolChange.Type.SIGNATURE;
+            } else if (before.getBodyHash() != symbol.getBodyHash()) {
+                type = SymbolChange.Type.BODY;
+            }
+            if (type != null) {
+                changes.add(new SymbolChange(symbol.getName(), symbol.getKind(), type, symbol.getSignature()));
+            }
+        }
+        for (SymbolFingerprint before : previous.symbols.values()) {
+            SymbolFingerprint symbol = symbols.get(before.getName());
+            if (symbol == null || symbol.getKind() != before.getKind()) {
+                changes.add(new SymbolChange(before.getName(), before.getKind(),
+                    SymbolChange.Type.REMOVED, before.getSignature()));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Hash of the signatures of all public symbols. It only changes when
+     * something other modules can call or subclass changes.
+     */
+    public long getSurfaceHash() {
+        Map<String, SymbolFingerprint> sorted = new TreeMap<>(symbols);
+        long hash = SymbolFingerprint.initialHash();
+        for (SymbolFingerprint symbol : sorted.values()) {
+            if (symbol.isPublic()) {
+                hash = SymbolFingerprint.hash(hash, symbol.getName());
+                hash = SymbolFingerprint.hash(hash, symbol.getSignatureHash());
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,339 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The Python files of a project as recorded in the Git index, read straight
+ * from .git/index without running git. Index versions 2 to 4 are supported,
+ * including the prefix-compressed paths of version 4 and SHA-256 object ids.
+ *
+ * <p>Each entry keeps the stat data git recorded when it last saw the file
+ * and the id of its blob. {@link #isClean} repeats git's own stat check, so
+ * a clean file is known to hold exactly that blob without being read.</p>
+ */
+public final class GitIndex {
+
+    private static final int SIGNATURE = 0x44495243; // "DIRC"
+    private static final int SHA1_LENGTH = 20;
+    private static final int SHA256_LENGTH = 32;
+
+    private static final int MODE_TYPE_MASK = 0170000;
+    private static final int MODE_REGULAR = 0100000;
+    private static final int FLAG_EXTENDED = 0x4000;
+    private static final int FLAG_STAGE_MASK = 0x3000;
+    private static final int FLAG_NAME_MASK = 0x0FFF;
+    private static final int EXTENDED_SKIP_WORKTREE = 0x4000;
+    private static final int EXTENDED_INTENT_TO_ADD = 0x2000;
+
+    private static final Pattern SHA256_FORMAT =
+        Pattern.compile("(?im)^\\s*objectformat\\s*=\\s*sha256\\s*$");
+
+    private final int version;
+    private final long mtimeSeconds;
+    private final int mtimeNanos;
+    private final Map<String, Entry> entries;
+
+    private GitIndex(int version, @NotNull FileTime mtime, @NotNull Map<String, Entry> entries) {
+        Instant instant = mtime.toInstant();
+        this.version = version;
+        this.mtimeSeconds = instant.getEpochSecond();
+        this.mtimeNanos = instant.getNano();
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Reads the index of the work tree the project is in, or returns null if
+     * the project is not inside a Git work tree or the repository has no
+     * index yet.
+     *
+     * @throws IOException if the index can't be read or is not a valid index
+     */
+    public static @Nullable GitIndex read(@NotNull Path projectRoot) throws IOException {
+        Path root = projectRoot.toAbsolutePath().normalize();
+        for (Path workTree = root; workTree != null; workTree = workTree.getParent()) {
+            Path gitDir = resolveGitDir(workTree.resolve(".git"));
+            if (gitDir == null) {
+                continue;
+            }
+            Path index = gitDir.resolve("index");
+            if (!Files.isRegularFile(index)) {
+                return null;
+            }
+            Path commonDir = resolveCommonDir(gitDir);
+            String prefix = toIndexPath(workTree.relativize(root).toString());
+            int oidLength = usesSha256(commonDir) ? SHA256_LENGTH : SHA1_LENGTH;
+            FileTime mtime = Files.getLastModifiedTime(index);
+            Map<String, Entry> entries = new HashMap<>();
+            int version = parse(index, prefix.isEmpty() ? "" : prefix + "/", oidLength, entries);
+            return new GitIndex(version, mtime, entries);
+        }
+        return null;
+    }
+
+    /** The index format version, 2 to 4. */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * The Python files in the project, by path relative to the project root
+     * with '/' separators. Only regular files at stage 0 are included, so
+     * unmerged paths, symlinks, submodules and sparse-checkout entries are
+     * left out.
+     */
+    public @NotNull Map<String, Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Whether the file on disk still matches the entry's stat data, so its
+     * content is the indexed blob. Files modified in the same instant as the
+     * index was written are racily clean and never count as clean, as in git.
+     */
+    public boolean isClean(@NotNull Entry entry, @NotNull Path file) {
+        if (entry.intentToAdd) {
+            return false;
+        }
+        if (entry.mtimeSeconds > mtimeSeconds
+            || entry.mtimeSeconds == mtimeSeconds && entry.mtimeNanos >= mtimeNanos) {
+            return false;
+        }
+
+        long size;
+        long inode = 0;
+        Instant modified;
+        try {
+            if (file.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+                Map<String, Object> attrs = Files.readAttributes(file, "unix:size,lastModifiedTime,ino,mode",
+                    LinkOption.NOFOLLOW_LINKS);
+                if (((Integer) attrs.get("mode") & MODE_TYPE_MASK) != MODE_REGULAR) {
+                    return false;
+                }
+                size = (Long) attrs.get("size");
+                inode = (Long) attrs.get("ino");
+                modified = ((FileTime) attrs.get("lastModifiedTime")).toInstant();
+            } else {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+                if (!attrs.isRegularFile()) {
+                    return false;
+                }
+                size = attrs.size();
+                modified = attrs.lastModifiedTime().toInstant();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        // The index keeps the low 32 bits; zero means the field was not recorded
+        return (int) modified.getEpochSecond() == (int) entry.mtimeSeconds
+            && (entry.mtimeNanos == 0 || modified.getNano() == entry.mtimeNanos)
+            && (int) size == entry.size
+            && (entry.inode == 0 || inode == 0 || (int) inode == entry.inode);
+    }
+
+    private static int parse(@NotNull Path index, @NotNull String prefix, int oidLength,
+                             @NotNull Map<String, Entry> entries) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != SIGNATURE) {
+                throw new IOException("Not a Git index: " + index);
+            }
+            int version = buffer.getInt();
+            if (version < 2 || version > 4) {
+                throw new IOException("Unsupported Git index version " + version + ": " + index);
+            }
+            int count = buffer.getInt();
+            byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+            byte[] path = new byte[256];
+            int pathLength = 0;
+
+            for (int i = 0; i < count; i++) {
+                int entryStart = buffer.position();
+                buffer.position(entryStart + 8); // ctime
+                int mtimeSeconds = buffer.getInt();
+                int mtimeNanos = buffer.getInt();
+                buffer.getInt(); // dev
+                int inode = buffer.getInt();
+                int mode = buffer.getInt();
+                buffer.position(buffer.position() + 8); // uid, gid
+                int size = buffer.getInt();
+                byte[] oid = new byte[oidLength];
+                buffer.get(oid);
+                int flags = buffer.getShort() & 0xFFFF;
+                int extended = 0;
+                if ((flags & FLAG_EXTENDED) != 0) {
+                    if (version < 3) {
+                        throw new IOException("Extended flags in a version 2 index: " + index);
+                    }
+                    extended = buffer.getShort() & 0xFFFF;
+                }
+
+                if (version == 4) {
+                    // The path drops a number of bytes from the end of the previous one and adds a suffix
+                    int strip = readOffset(buffer);
+                    if (strip > pathLength) {
+                        throw new IOException("Corrupt path in Git index: " + index);
+                    }
+                    pathLength -= strip;
+                    for (byte b = buffer.get(); b != 0; b = buffer.get()) {
+                        if (pathLength == path.length) {
+                            path = Arrays.copyOf(path, path.length * 2);
+                        }
+                        path[pathLength++] = b;
+                    }
+                } else {
+                    int nameOffset = buffer.position() - entryStart;
+                    pathLength = 0;
+                    for (byte b = buffer.get(); b != 0; b = buffer.get()) {
+                        if (pathLength == path.length) {
+                            path = Arrays.copyOf(path, path.length * 2);
+                        }
+                        path[pathLength++] = b;
+                    }
+                    if ((flags & FLAG_NAME_MASK) != FLAG_NAME_MASK && (flags & FLAG_NAME_MASK) != pathLength) {
+                        throw new IOException("Corrupt path in Git index: " + index);
+                    }
+                    // Entries are NUL-padded to a multiple of eight bytes
+                    buffer.position(entryStart + ((nameOffset + pathLength + 8) & ~7));
+                }
+
+                if ((flags & FLAG_STAGE_MASK) != 0 || (mode & MODE_TYPE_MASK) != MODE_REGULAR
+                    || (extended & EXTENDED_SKIP_WORKTREE) != 0
+                    || !isPythonFile(path, pathLength) || !startsWith(path, pathLength, prefixBytes)) {
+                    continue;
+                }
+                String relPath = new String(path, prefixBytes.length, pathLength - prefixBytes.length,
+                    StandardCharsets.UTF_8);
+                entries.put(relPath, new Entry(mtimeSeconds & 0xFFFFFFFFL, mtimeNanos, inode, size, oid,
+                    (extended & EXTENDED_INTENT_TO_ADD) != 0));
+            }
+            return version;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException and friends from a truncated index
+            throw new IOException("Corrupt Git index: " + index, e);
+        }
+    }
+
+    /**
+     * Reads the offset encoding git uses for the prefix length of version 4
+     * paths: big-endian base 128 where every continuation adds one.
+     */
+    private static int readOffset(@NotNull ByteBuffer buffer) {
+        int b = buffer.get() & 0xFF;
+        int value = b & 0x7F;
+        while ((b & 0x80) != 0) {
+            b = buffer.get() & 0xFF;
+            value = ((value + 1) << 7) | (b & 0x7F);
+        }
+        return value;
+    }
+
+    private static boolean isPythonFile(byte @NotNull [] path, int length) {
+        return length > 3 && path[length - 3] == '.' && path[length - 2] == 'p' && path[length - 1] == 'y';
+    }
+
+    private static boolean startsWith(byte @NotNull [] path, int length, byte @NotNull [] prefix) {
+        if (length <= prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (path[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the Git directory for a .git entry: the directory itself, or
+     * the one a linked work tree's or submodule's .git file points to.
+     */
+    private static @Nullable Path resolveGitDir(@NotNull Path dotGit) throws IOException {
+        if (Files.isDirectory(dotGit)) {
+            return dotGit;
+        }
+        if (!Files.isRegularFile(dotGit)) {
+            return null;
+        }
+        String content = Files.readString(dotGit, StandardCharsets.UTF_8).trim();
+        if (!content.startsWith("gitdir:")) {
+            return null;
+        }
+        return dotGit.getParent().resolve(content.substring("gitdir:".length()).trim()).normalize();
+    }
+
+    /**
+     * Linked work trees keep their own index but share config with the main
+     * repository, named in their commondir file.
+     */
+    private static @NotNull Path resolveCommonDir(@NotNull Path gitDir) {
+        try {
+            String commonDir = Files.readString(gitDir.resolve("commondir"), StandardCharsets.UTF_8).trim();
+            return gitDir.resolve(commonDir).normalize();
+        } catch (IOException e) {
+            return gitDir;
+        }
+    }
+
+    private static boolean usesSha256(@NotNull Path commonDir) {
+        try {
+            return SHA256_FORMAT.matcher(Files.readString(commonDir.resolve("config"), StandardCharsets.UTF_8)).find();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static @NotNull String toIndexPath(@NotNull String path) {
+        return path.replace('\\', '/');
+    }
+
+    /**
+     * One indexed Python file: the stat data git recorded, truncated to 32
+     * bits as in the index, and the id of its blob.
+     */
+    public static final class Entry {
+        final long mtimeSeconds;
+        final int mtimeNanos;
+        final int inode;
+        final int size;
+        final byte[] oid;
+        final boolean intentToAdd;
+
+        Entry(long mtimeSeconds, int mtimeNanos, int inode, int size, byte @NotNull [] oid, boolean intentToAdd) {
+            this.mtimeSeconds = mtimeSeconds;
+            this.mtimeNanos = mtimeNanos;
+            this.inode = inode;
+            this.size = size;
+            this.oid = oid;
+            this.intentToAdd = intentToAdd;
+        }
+
+        /** The blob id as hex, as git prints it. */
+        public @NotNull String getOidHex() {
+            return ChangeDetectionEngine.toHex(oid);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers, in .pycompilecheck/gitindex.bin, the blob id each Python file
+ * had in the Git index when it was last analyzed, so the next Git index run
+ * knows which files changed in between, whether by edits, commits or a
+ * checkout of another branch.
+ */
+public class GitIndexStore {
+
+    static final String GIT_INDEX_FILE = "gitindex.bin";
+
+    private static final int MAGIC = 0x50434347; // "PCCG"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private @Nullable Map<String, byte[]> oids;
+
+    public GitIndexStore(@NotNull Path projectRoot) {
+        this.file = projectRoot.resolve(MetadataStore.METADATA_DIR).resolve(GIT_INDEX_FILE);
+    }
+
+    /**
+     * The blob ids of the last saved run, by path relative to the project
+     * root with '/' separators. Empty if there was no run or the file can't
+     * be read.
+     */
+    public synchronized @NotNull Map<String, byte[]> getOids() {
+        load();
+        return oids;
+    }
+
+    private void load() {
+        if (oids != null) {
+            return;
+        }
+        oids = new HashMap<>();
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            Map<String, byte[]> saved = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String relPath = in.readUTF();
+                byte[] oid = new byte[in.readUnsignedByte()];
+                in.readFully(oid);
+                saved.put(relPath, oid);
+            }
+            oids = saved;
+        } catch (IOException e) {
+            // A corrupt file only costs one run that treats every file as changed
+        }
+    }
+
+    /**
+     * Replaces the saved blob ids.
+     */
+    public synchronized void save(@NotNull Map<String, byte[]> oids) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(GIT_INDEX_FILE + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(oids.size());
+            for (Map.Entry<String, byte[]> entry : oids.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeByte(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.oids = oids;
+    }
+}
@@ -0,0 +1,324 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Module-level import graph of the project, built from the import lines
+ * kept in the file metadata.
+ *
+ * <p>Files are numbered in path order and edges are stored as int arrays in
+ * compressed sparse row form: the imports of file i are
+ * {@code imports[importOffsets[i] .. importOffsets[i + 1])}. A second set of
+ * arrays indexes the reverse edges, so the importers of a module are found
+ * without scanning the whole graph.</p>
+ *
+ * <p>Imports are resolved against the project root, a top-level "src"
+ * directory if there is one, and the importing file's own directory.
+ * Imports of anything outside the project (stdlib, site-packages) are
+ * dropped.</p>
+ */
+public class ImportGraph {
+
+    private final String[] files;
+    private final Map<String, Integer> fileIds;
+    private final int[] importOffsets;
+    private final int[] imports;
+    private final int[] importerOffsets;
+    private final int[] importers;
+
+    private ImportGraph(@NotNull String[] files, @NotNull Map<String, Integer> fileIds,
+                        int @NotNull [] importOffsets, int @NotNull [] imports,
+                        int @NotNull [] importerOffsets, int @NotNull [] importers) {
+        this.files = files;
+        this.fileIds = fileIds;
+        this.importOffsets = importOffsets;
+        this.imports = imports;
+        this.importerOffsets = importerOffsets;
+        this.importers = importers;
+    }
+
+    /**
+     * Builds the graph from the import lines of every file, keyed by path
+     * relative to the project root.
+     */
+    public static @NotNull ImportGraph build(@NotNull Map<String, List<String>> importLines, @NotNull String separator) {
+        String[] files = importLines.keySet().toArray(new String[0]);
+        Arrays.sort(files);
+        Map<String, Integer> fileIds = new HashMap<>(files.length * 2);
+        for (int i = 0; i < files.length; i++) {
+            fileIds.put(files[i], i);
+        }
+
+        Resolver resolver = new Resolver(fileIds, separator);
+        int[] importOffsets = new int[files.length + 1];
+        int[] importCounts = new int[files.length];
+        List<int[]> targets = new ArrayList<>(files.length);
+        int edgeCount = 0;
+
+        for (int i = 0; i < files.length; i++) {
+            Set<Integer> resolved = new LinkedHashSet<>();
+            for (String line : importLines.get(files[i])) {
+                resolver.resolve(files[i], line, resolved);
+            }
+            resolved.remove(i);
+
+            int[] fileTargets = new int[resolved.size()];
+            int j = 0;
+            for (int target : resolved) {
+                fileTargets[j++] = target;
+                importCounts[target]++;
+            }
+            Arrays.sort(fileTargets);
+            targets.add(fileTargets);
+            importOffsets[i] = edgeCount;
+            edgeCount += fileTargets.length;
+        }
+        importOffsets[files.length] = edgeCount;
+
+        int[] imports = new int[edgeCount];
+        for (int i = 0; i < files.length; i++) {
+            System.arraycopy(targets.get(i), 0, imports, importOffsets[i], targets.get(i).length);
+        }
+
+        // Reverse index: counting sort of the edges by target
+        int[] importerOffsets = new int[files.length + 1];
+        for (int i = 0; i < files.length; i++) {
+            importerOffsets[i + 1] = importerOffsets[i] + importCounts[i];
+        }
+        int[] importers = new int[edgeCount];
+        int[] fill = Arrays.copyOf(importerOffsets, files.length);
+        for (int i = 0; i < files.length; i++) {
+            for (int e = importOffsets[i]; e < importOffsets[i + 1]; e++) {
+                importers[fill[imports[e]]++] = i;
+            }
+        }
+
+        return new ImportGraph(files, fileIds, importOffsets, imports, importerOffsets, importers);
+    }
+
+    public int getFileCount() {
+        return files.length;
+    }
+
+    public int getEdgeCount() {
+        return imports.length;
+    }
+
+    /**
+     * Project files imported by the given file.
+     */
+    public @NotNull List<String> getImports(@NotNull String relPath) {
+        Integer id = fileIds.get(relPath);
+        return id != null ? slice(imports, importOffsets[id], importOffsets[id + 1]) : List.of();
+    }
+
+    /**
+     * Project files that import the given file.
+     */
+    public @NotNull List<String> getImporters(@NotNull String relPath) {
+        Integer id = fileIds.get(relPath);
+        return id != null ? slice(importers, importerOffsets[id], importerOffsets[id + 1]) : List.of();
+    }
+
+    /**
+     * Returns every file that imports one of the changed files, directly or
+     * through other project modules, mapped to the file it imports on the
+     * way there. The changed files themselves are not included.
+     */
+    public @NotNull Map<String, String> dependentsOf(@NotNull Collection<String> changed) {
+        BitSet seen = new BitSet(files.length);
+        int[] queue = new int[files.length];
+        int head = 0;
+        int tail = 0;
+        for (String relPath : changed) {
+            Integer id = fileIds.get(relPath);
+            if (id != null && !seen.get(id)) {
+                seen.set(id);
+                queue[tail++] = id;
+            }
+        }
+        int roots = tail;
+
+        Map<String, String> dependents = new LinkedHashMap<>();
+        while (head < tail) {
+            int module = queue[head++];
+            for (int e = importerOffsets[module]; e < importerOffsets[module + 1]; e++) {
+                int importer = importers[e];
+                if (!seen.get(importer)) {
+                    seen.set(importer);
+                    queue[tail++] = importer;
+                    dependents.put(files[importer], files[module]);
+                }
+            }
+        }
+        return tail > roots ? dependents : Map.of();
+    }
+
+    private @NotNull List<String> slice(int @NotNull [] ids, int from, int to) {
+        List<String> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(files[ids[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Turns import lines as kept by _detect_imports into project files.
+     */
+    static class Resolver {
+        private final Map<String, Integer> fileIds;
+        private final String separator;
+        private final List<String> sourceRoots = new ArrayList<>();
+
+        Resolver(@NotNull Map<String, Integer> fileIds, @NotNull String separator) {
+            this.fileIds = fileIds;
+            this.separator = separator;
+            sourceRoots.add("");
+            String src = "src" + separator;
+            for (String path : fileIds.keySet()) {
+                if (path.startsWith(src)) {
+                    sourceRoots.add(src);
+                    break;
+                }
+            }
+        }
+
+        void resolve(@NotNull String importingFile, @NotNull String line, @NotNull Set<Integer> out) {
+            String statement = stripComment(line).trim();
+            String directory = parentOf(importingFile);
+
+            if (statement.startsWith("import ")) {
+                for (String part : statement.substring("import ".length()).split(",")) {
+                    String module = stripAlias(part);
+                    if (!module.isEmpty()) {
+                        addModule(module, directory, out);
+                    }
+                }
+            } else if (statement.startsWith("from ")) {
+                int importAt = statement.indexOf(" import ");
+                String module = (importAt >= 0 ? statement.substring(5, importAt) : statement.substring(5)).trim();
+                String names = importAt >= 0 ? statement.substring(importAt + " import ".length()) : "";
+
+                int level = 0;
+                while (level < module.length() && module.charAt(level) == '.') {
+                    level++;
+                }
+                String base = level > 0 ? relativeBase(directory, level) : null;
+                if (level > 0 && base == null) {
+                    // More leading dots than parent packages
+                    return;
+                }
+                String rest = module.substring(level);
+
+                boolean resolvedName = false;
+                for (String part : names.replace("(", "").replace(")", "").split(",")) {
+                    String name = stripAlias(part);
+                    if (name.isEmpty() || name.equals("*") || name.equals("\\")) {
+                        continue;
+                    }
+                    // "from pkg import mod" may import a submodule rather than a name
+                    String submodule = rest.isEmpty() ? name : rest + "." + name;
+                    Integer id = level > 0 ? find(base, submodule) : findAbsolute(submodule, directory);
+                    if (id != null) {
+                        out.add(id);
+                        resolvedName = true;
+                    }
+                }
+                if (!resolvedName || !rest.isEmpty()) {
+                    Integer id = level > 0
+                        ? (rest.isEmpty() ? find(base, null) : find(base, rest))
+                        : findAbsolute(rest, directory);
+                    if (id != null) {
+                        out.add(id);
+                    }
+                }
+            }
+        }
+
+        private void addModule(@NotNull String module, @NotNull String directory, @NotNull Set<Integer> out) {
+            // "import a.b.c" also runs a/__init__.py and a/b/__init__.py
+            String prefix = null;
+            for (String part : module.split("\\.")) {
+                prefix = prefix == null ? part : prefix + "." + part;
+                Integer id = findAbsolute(prefix, directory);
+                if (id != null) {
+                    out.add(id);
+                }
+            }
+        }
+
+        private @Nullable Integer findAbsolute(@NotNull String module, @NotNull String directory) {
+            if (module.isEmpty()) {
+                return null;
+            }
+            for (String root : sourceRoots) {
+                Integer id = find(root, module);
+                if (id != null) {
+                    return id;
+                }
+            }
+            // Scripts can import their siblings when run from their own directory
+            return find(directory, module);
+        }
+
+        /**
+         * Looks up module as a .py file or package __init__.py below base,
+         * or base's own __init__.py if module is null.
+         */
+        private @Nullable Integer find(@NotNull String base, @Nullable String module) {
+            String path = module != null ? base + module.replace(".", separator) : trimSeparator(base);
+            Integer id = path.isEmpty() ? null : fileIds.get(path + ".py");
+            if (id == null) {
+                id = fileIds.get(path.isEmpty() ? "__init__.py" : path + separator + "__init__.py");
+            }
+            return id;
+        }
+
+        private @NotNull String parentOf(@NotNull String relPath) {
+            int end = relPath.lastIndexOf(separator);
+            return end >= 0 ? relPath.substring(0, end + separator.length()) : "";
+        }
+
+        /**
+         * Directory that "from ..." with the given number of dots refers to,
+         * or null if it would leave the project.
+         */
+        private @Nullable String relativeBase(@NotNull String directory, int level) {
+            String base = directory;
+            for (int i = 1; i < level; i++) {
+                if (base.isEmpty()) {
+                    return null;
+                }
+                base = parentOf(trimSeparator(base));
+            }
+            return base;
+        }
+
+        private @NotNull String trimSeparator(@NotNull String path) {
+            return path.endsWith(separator) ? path.substring(0, path.length() - separator.length()) : path;
+        }
+
+        private static @NotNull String stripAlias(@NotNull String part) {
+            String name = part.trim();
+            int alias = name.indexOf(" as ");
+            return (alias >= 0 ? name.substring(0, alias) : name).trim();
+        }
+
+        private static @NotNull String stripComment(@NotNull String line) {
+            int hash = line.indexOf('#');
+            return hash >= 0 ? line.substring(0, hash) : line;
+        }
+    }
+}
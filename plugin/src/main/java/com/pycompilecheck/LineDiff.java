@@ -0,0 +1,184 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line-level diff between two versions of a file, reporting which lines of
+ * the new version were inserted or changed.
+ *
+ * <p>Lines are interned to ints, the common prefix and suffix are trimmed,
+ * and the rest goes through Myers' O(ND) algorithm. Typical edits touch a few
+ * lines, so D stays small; past {@link #MAX_EDIT_DISTANCE} the whole middle
+ * section is reported as one range.</p>
+ */
+final class LineDiff {
+
+    static final int MAX_EDIT_DISTANCE = 1000;
+
+    private LineDiff() {
+    }
+
+    /**
+     * Returns the changed ranges of the new content as flattened
+     * [startLine, endLine) pairs of 0-based line numbers. Lines that were only
+     * deleted show up as an empty range at the line that now follows them.
+     */
+    static int @NotNull [] changedLines(byte @NotNull [] oldContent, byte @NotNull [] newContent) {
+        Map<String, Integer> ids = new HashMap<>();
+        return changedLines(lineIds(oldContent, ids), lineIds(newContent, ids));
+    }
+
+    static int @NotNull [] changedLines(int @NotNull [] a, int @NotNull [] b) {
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+            && a[a.length - 1 - suffix] == b[b.length - 1 - suffix]) {
+            suffix++;
+        }
+
+        int[] oldMiddle = Arrays.copyOfRange(a, prefix, a.length - suffix);
+        int[] newMiddle = Arrays.copyOfRange(b, prefix, b.length - suffix);
+        if (oldMiddle.length == 0 && newMiddle.length == 0) {
+            return new int[0];
+        }
+        if (oldMiddle.length == 0 || newMiddle.length == 0) {
+            return new int[] {prefix, prefix + newMiddle.length};
+        }
+
+        boolean[] inserted = new boolean[newMiddle.length];
+        boolean[] deletedBefore = new boolean[newMiddle.length + 1];
+        if (!diff(oldMiddle, newMiddle, inserted, deletedBefore)) {
+            return new int[] {prefix, prefix + newMiddle.length};
+        }
+        return toRanges(inserted, deletedBefore, prefix);
+    }
+
+    /**
+     * Runs Myers' algorithm and marks inserted lines of b and the positions in
+     * b where lines of a were deleted. Returns false if the edit distance
+     * exceeds the limit.
+     */
+    private static boolean diff(int @NotNull [] a, int @NotNull [] b,
+                                boolean @NotNull [] inserted, boolean @NotNull [] deletedBefore) {
+        int n = a.length;
+        int m = b.length;
+        int max = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        // trace.get(d) holds v[-d..d] as it was before step d
+        List<int[]> trace = new ArrayList<>();
+
+        for (int d = 0; d <= max; d++) {
+            trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])
+                    ? v[offset + k + 1]
+                    : v[offset + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a[x] == b[y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    backtrack(trace, n, m, inserted, deletedBefore);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void backtrack(@NotNull List<int[]> trace, int n, int m,
+                                  boolean @NotNull [] inserted, boolean @NotNull [] deletedBefore) {
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d > 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            int prevK = k == -d || (k != d && v[d + k - 1] < v[d + k + 1]) ? k + 1 : k - 1;
+            int prevX = v[d + prevK];
+            int prevY = prevX - prevK;
+
+            // Skip the diagonal of unchanged lines back to the edit
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+            }
+            if (x == prevX) {
+                inserted[prevY] = true;
+            } else {
+                deletedBefore[prevY] = true;
+            }
+            x = prevX;
+            y = prevY;
+        }
+    }
+
+    private static int @NotNull [] toRanges(boolean @NotNull [] inserted, boolean @NotNull [] deletedBefore, int base) {
+        List<Integer> ranges = new ArrayList<>();
+        int line = 0;
+        while (line <= inserted.length) {
+            if (line < inserted.length && inserted[line]) {
+                int start = line;
+                while (line < inserted.length && inserted[line]) {
+                    line++;
+                }
+                ranges.add(base + start);
+                ranges.add(base + line);
+                // A deletion right after the inserted block belongs to the same change
+                line++;
+            } else if (deletedBefore[line]) {
+                ranges.add(base + line);
+                ranges.add(base + line);
+                line++;
+            } else {
+                line++;
+            }
+        }
+
+        int[] result = new int[ranges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ranges.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Splits content on '\n' (dropping a trailing '\r') and maps each
+     * distinct line to an int, like a Document counts lines.
+     */
+    private static int @NotNull [] lineIds(byte @NotNull [] content, @NotNull Map<String, Integer> ids) {
+        List<Integer> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= content.length; i++) {
+            if (i == content.length || content[i] == '\n') {
+                int end = i > start && content[i - 1] == '\r' ? i - 1 : i;
+                String line = new String(content, start, end - start, StandardCharsets.UTF_8);
+                Integer id = ids.get(line);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(line, id);
+                }
+                lines.add(id);
+                start = i + 1;
+            }
+        }
+
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = lines.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,156 @@
+package com.pycompilecheck;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes .pycompilecheck/metadata.json in the format used by
+ * the Python ProjectAnalyzer, so both sides can work on the same file.
+ */
+public class MetadataStore {
+
+    static final String METADATA_DIR = ".pycompilecheck";
+    static final String METADATA_FILE = "metadata.json";
+
+    private final Path metadataFile;
+
+    public MetadataStore(@NotNull Path projectRoot) {
+        this.metadataFile = projectRoot.resolve(METADATA_DIR).resolve(METADATA_FILE);
+    }
+
+    public @NotNull Path getMetadataFile() {
+        return metadataFile;
+    }
+
+    /**
+     * Loads the stored metadata, or an empty map if there is none yet.
+     */
+    public @NotNull Map<String, FileMetadata> load() throws IOException {
+        Map<String, FileMetadata> metadata = new LinkedHashMap<>();
+        if (!Files.exists(metadataFile)) {
+            return metadata;
+        }
+
+        try (Reader in = Files.newBufferedReader(metadataFile, StandardCharsets.UTF_8)) {
+            JsonReader reader = new JsonReader(in);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String file = reader.nextName();
+                metadata.put(file, readEntry(reader));
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Malformed " + metadataFile, e);
+        }
+        return metadata;
+    }
+
+    /**
+     * Writes the metadata with the same layout as json.dump(..., indent=2).
+     * The file is replaced atomically so readers never see a partial write.
+     */
+    public void save(@NotNull Map<String, FileMetadata> metadata) throws IOException {
+        Files.createDirectories(metadataFile.getParent());
+        Path tmp = metadataFile.resolveSibling(METADATA_FILE + ".tmp");
+
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            JsonWriter writer = new JsonWriter(out);
+            writer.setIndent("  ");
+            writer.beginObject();
+            for (Map.Entry<String, FileMetadata> entry : metadata.entrySet()) {
+                writer.name(entry.getKey());
+                writeEntry(writer, entry.getValue());
+            }
+            writer.endObject();
+            writer.flush();
+        }
+
+        Files.move(tmp, metadataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static @NotNull FileMetadata readEntry(@NotNull JsonReader reader) throws IOException {
+        double lastModified = 0;
+        long size = 0;
+        long inode = 0;
+        String hash = "";
+        String hashAlgorithm = FileMetadata.SHA256;
+        List<String> imports = new ArrayList<>();
+        String lastAnalyzed = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "last_modified":
+                    lastModified = reader.nextDouble();
+                    break;
+                case "size":
+                    size = reader.nextLong();
+                    break;
+                case "inode":
+                    inode = reader.nextLong();
+                    break;
+                case "hash":
+                    hash = reader.nextString();
+                    break;
+                case "hash_algorithm":
+                    hashAlgorithm = reader.nextString();
+                    break;
+                case "imports":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        imports.add(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                case "last_analyzed":
+                    lastAnalyzed = reader.peek() == JsonToken.NULL ? nullToEmpty(reader) : reader.nextString();
+                    break;
+                default:
+                    // Keys added by newer versions are not needed here
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return new FileMetadata(lastModified, size, inode, hash, hashAlgorithm, imports, lastAnalyzed);
+    }
+
+    private static void writeEntry(@NotNull JsonWriter writer, @NotNull FileMetadata entry) throws IOException {
+        writer.beginObject();
+        // BigDecimal keeps timestamps in plain notation, as Python writes them
+        writer.name("last_modified").value(BigDecimal.valueOf(entry.getLastModified()));
+        writer.name("size").value(entry.getSize());
+        writer.name("inode").value(entry.getInode());
+        writer.name("hash").value(entry.getHash());
+        writer.name("hash_algorithm").value(entry.getHashAlgorithm());
+        writer.name("imports");
+        writer.beginArray();
+        for (String line : entry.getImports()) {
+            writer.value(line);
+        }
+        writer.endArray();
+        writer.name("last_analyzed").value(entry.getLastAnalyzed());
+        writer.endObject();
+    }
+
+    private static @NotNull String nullToEmpty(@NotNull JsonReader reader) throws IOException {
+        reader.nextNull();
+        return "";
+    }
+}
@@ -0,0 +1,124 @@
+package com.pycompilecheck;
+
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.lang.annotation.ExternalAnnotator;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.psi.PsiFile;
+import com.jetbrains.python.psi.PyFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Editor highlighting of PyCompileCheck changes.
+ *
+ * <p>Runs in the three phases of an external annotator: the file path is
+ * taken under the read action, the file is fingerprinted and the
+ * project-wide result awaited for at most {@link #DEADLINE_MS} on a
+ * background thread, and the underlines are added from that result under
+ * a read action again. A slow analysis
+ * leaves the file without underlines instead of blocking highlighting,
+ * and highlighting is restarted once the result is in.</p>
+ */
+public class PyCompileCheckAnnotator extends ExternalAnnotator<PyCompileCheckAnnotator.Snapshot, PyCompileCheckResult> {
+
+    private static final Logger LOG = Logger.getInstance(PyCompileCheckAnnotator.class);
+    private static final long DEADLINE_MS = 3_000;
+
+    @Override
+    public @Nullable Snapshot collectInformation(@NotNull PsiFile file, @NotNull Editor editor, boolean hasErrors) {
+        return collectInformation(file);
+    }
+
+    @Override
+    public @Nullable Snapshot collectInformation(@NotNull PsiFile file) {
+        if (!file.getName().endsWith(".py") || file.getVirtualFile() == null) {
+            return null;
+        }
+        PyCompileCheckProjectService service = file.getProject().getService(PyCompileCheckProjectService.class);
+        if (service == null) {
+            return null;
+        }
+        return new Snapshot(service, file.getVirtualFile().getPath(), file instanceof PyFile ? (PyFile) file : null);
+    }
+
+    @Override
+    public @Nullable PyCompileCheckResult doAnnotate(@Nullable Snapshot snapshot) {
+        if (snapshot == null) {
+            return null;
+        }
+        try {
+            // Fingerprint files on first sight, so their next change can be reported per symbol.
+            // That walks the whole file, so it gets its own read action off the highlighting pass.
+            PyFile file = snapshot.file;
+            if (file != null) {
+                ApplicationManager.getApplication().runReadAction(() -> {
+                    if (file.isValid()) {
+                        snapshot.service.getStructureIndexer().seed(file);
+                    }
+                });
+            }
+            PyCompileCheckResult result = snapshot.service.awaitResult(DEADLINE_MS);
+            if (result == null) {
+                LOG.debug("No PyCompileCheck result available for " + snapshot.path);
+                return null;
+            }
+            return result.hasChanges(snapshot.path) ? result : null;
+        } catch (ProcessCanceledException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            LOG.warn("PyCompileCheck annotation failed for " + snapshot.path, e);
+            snapshot.service.getMetrics().recordInspectionError();
+            return null;
+        }
+    }
+
+    @Override
+    public void apply(@NotNull PsiFile file, @Nullable PyCompileCheckResult result, @NotNull AnnotationHolder holder) {
+        if (result == null || file.getVirtualFile() == null || !result.hasChanges(file.getVirtualFile().getPath())) {
+            return;
+        }
+        ChangeHighlighter.collect(file, result, (range, message, type) ->
+            holder.newAnnotation(severity(type), message)
+                .range(range != null ? range : file.getTextRange())
+                .highlightType(type)
+                .create());
+    }
+
+    @Override
+    public @NotNull String getPairedBatchInspectionShortName() {
+        return PyCompileCheckInspection.SHORT_NAME;
+    }
+
+    private static @NotNull HighlightSeverity severity(@NotNull ProblemHighlightType type) {
+        switch (type) {
+            case ERROR:
+                return HighlightSeverity.ERROR;
+            case WARNING:
+                return HighlightSeverity.WARNING;
+            case WEAK_WARNING:
+                return HighlightSeverity.WEAK_WARNING;
+            default:
+                return HighlightSeverity.INFORMATION;
+        }
+    }
+
+    /**
+     * What the read action hands to the background phase.
+     */
+    static final class Snapshot {
+        final PyCompileCheckProjectService service;
+        final String path;
+        final @Nullable PyFile file;
+
+        Snapshot(@NotNull PyCompileCheckProjectService service, @NotNull String path, @Nullable PyFile file) {
+            this.service = service;
+            this.path = path;
+            this.file = file;
+        }
+    }
+}
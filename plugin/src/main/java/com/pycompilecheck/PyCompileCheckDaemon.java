@@ -0,0 +1,285 @@
+package com.pycompilecheck;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.intellij.openapi.diagnostic.Logger;
+import com.pycompilecheck.AnalysisOutputParser.Response;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Long-lived PyCompileCheck analyzer process for a single project.
+ * The process is started once and receives requests over stdin/stdout,
+ * one JSON object per line, so analyses don't pay interpreter startup,
+ * module import and metadata loading every time.
+ *
+ * <p>Startup latency, up to the first answered ping, and the time spent
+ * reading analysis responses are recorded in {@link AnalysisMetrics}.</p>
+ *
+ * <p>The analyzer only reports changes; the inspection renders them. If
+ * it is asked to add TODO comments to changed files instead, the guard
+ * holds watcher events for the request's paths while it runs, and the files
+ * it rewrote are recorded in the {@link SelfWriteGuard}, so the watcher
+ * doesn't analyze them again.</p>
+ */
+public class PyCompileCheckDaemon {
+
+    private static final Logger LOG = Logger.getInstance(PyCompileCheckDaemon.class);
+    private static final long HEALTH_CHECK_INTERVAL_MS = 30_000;
+    private static final long PING_TIMEOUT_MS = 5_000;
+    private static final long ANALYZE_TIMEOUT_MS = 300_000;
+
+    private final String projectPath;
+    private final AnalysisMetrics metrics;
+    private final SelfWriteGuard selfWrites;
+    private final boolean writeComments;
+    // Volatile so cancel() can kill a running request without the monitor
+    private volatile Process process;
+    private BufferedWriter writer;
+    private JsonReader reader;
+    private long nextRequestId = 1;
+    private long lastHealthyAt;
+
+    public PyCompileCheckDaemon(@NotNull String projectPath, @NotNull AnalysisMetrics metrics,
+                                @NotNull SelfWriteGuard selfWrites, boolean writeComments) {
+        this.projectPath = projectPath;
+        this.metrics = metrics;
+        this.selfWrites = selfWrites;
+        this.writeComments = writeComments;
+    }
+
+    /**
+     * Runs an analysis of the project and returns its result, or null if
+     * the analysis failed. When paths is not null only those files are
+     * re-analyzed.
+     */
+    public @Nullable PyCompileCheckResult analyze(@Nullable Collection<String> paths) {
+        return analyze(paths, () -> false);
+    }
+
+    /**
+     * Like {@link #analyze(Collection)}, but doesn't retry a request that
+     * failed because {@link #cancel()} killed the process once cancelled
+     * returns true.
+     */
+    public synchronized @Nullable PyCompileCheckResult analyze(@Nullable Collection<String> paths,
+                                                               @NotNull BooleanSupplier cancelled) {
+        JsonObject request = new JsonObject();
+        request.addProperty("command", "analyze");
+        request.addProperty("project_path", projectPath);
+        request.addProperty("write_comments", writeComments);
+        if (paths != null) {
+            JsonArray pathList = new JsonArray();
+            for (String path : paths) {
+                pathList.add(path);
+            }
+            request.add("paths", pathList);
+        }
+
+        // The VFS may report a rewritten file before the response names it
+        if (writeComments) {
+            selfWrites.beginRequest(paths != null ? paths : List.of(projectPath));
+        }
+        try {
+            return sendAnalyze(request, cancelled);
+        } finally {
+            if (writeComments) {
+                selfWrites.endRequest();
+            }
+        }
+    }
+
+    private @Nullable PyCompileCheckResult sendAnalyze(@NotNull JsonObject request,
+                                                       @NotNull BooleanSupplier cancelled) {
+        // One retry covers a daemon that crashed since the last request
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            try {
+                ensureHealthy();
+                Response response = send(request, ANALYZE_TIMEOUT_MS);
+                for (AnalysisOutputParser.WrittenFile written : response.writtenFiles) {
+                    selfWrites.record(projectPath + "/" + written.file.replace('\\', '/'),
+                        written.size, written.mtimeMillis);
+                }
+                if (!"success".equals(response.status)) {
+                    LOG.warn("PyCompileCheck daemon analysis failed: " + response.message);
+                    return null;
+                }
+                return response.result;
+            } catch (IOException e) {
+                destroy();
+                if (cancelled.getAsBoolean()) {
+                    LOG.info("PyCompileCheck daemon analysis cancelled");
+                    return null;
+                }
+                LOG.warn("PyCompileCheck daemon request failed, restarting: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Kills the process in the middle of a request whose result is no longer
+     * wanted. Unlike {@link #stop()} this doesn't wait for the running
+     * request; the next request starts a new process.
+     */
+    public void cancel() {
+        Process current = process;
+        if (current != null) {
+            current.destroyForcibly();
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return process != null && process.isAlive();
+    }
+
+    public synchronized void stop() {
+        if (isRunning()) {
+            try {
+                JsonObject request = new JsonObject();
+                request.addProperty("command", "shutdown");
+                send(request, PING_TIMEOUT_MS);
+            } catch (IOException e) {
+                // The process is destroyed below anyway
+            }
+        }
+        destroy();
+    }
+
+    private void ensureHealthy() throws IOException {
+        if (!isRunning()) {
+            start();
+            return;
+        }
+
+        // Ping an idle daemon before trusting it with a long request
+        if (System.currentTimeMillis() - lastHealthyAt > HEALTH_CHECK_INTERVAL_MS) {
+            JsonObject ping = new JsonObject();
+            ping.addProperty("command", "ping");
+            try {
+                send(ping, PING_TIMEOUT_MS);
+            } catch (IOException e) {
+                LOG.warn("PyCompileCheck daemon failed health check, restarting: " + e.getMessage());
+                destroy();
+                start();
+            }
+        }
+    }
+
+    private void start() throws IOException {
+        String pycompilecheckPath = findPyCompileCheckPath();
+        if (pycompilecheckPath == null) {
+            throw new IOException("PyCompileCheck installation not found");
+        }
+
+        String integrationScript = pycompilecheckPath + "/plugin/pycharm_integration.py";
+        File logFile = new File(projectPath, ".pycompilecheck/daemon.log");
+        logFile.getParentFile().mkdirs();
+
+        ProcessBuilder pb = new ProcessBuilder("python3", integrationScript, "--daemon");
+        pb.redirectError(ProcessBuilder.Redirect.appendTo(logFile));
+
+        long startedAt = System.nanoTime();
+        process = pb.start();
+        writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        // Lenient so one reader can consume the whole stream of response objects
+        reader = new JsonReader(new BufferedReader(
+            new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)));
+        reader.setLenient(true);
+
+        // The first ping answers once the interpreter and analyzer are loaded
+        JsonObject ping = new JsonObject();
+        ping.addProperty("command", "ping");
+        send(ping, PING_TIMEOUT_MS);
+        metrics.processSpawn.record(System.nanoTime() - startedAt);
+        LOG.info("PyCompileCheck daemon started for project: " + projectPath);
+    }
+
+    private @NotNull Response send(@NotNull JsonObject request, long timeoutMs) throws IOException {
+        long id = nextRequestId++;
+        request.addProperty("id", id);
+
+        // A hung interpreter is killed, which unblocks the read below
+        Process current = process;
+        AtomicBoolean done = new AtomicBoolean();
+        CompletableFuture.delayedExecutor(timeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (!done.get()) {
+                LOG.warn("PyCompileCheck daemon request " + id + " timed out");
+                current.destroyForcibly();
+            }
+        });
+
+        try {
+            writer.write(request.toString());
+            writer.newLine();
+            writer.flush();
+
+            // Change records are streamed into the result as they arrive
+            while (reader.peek() != JsonToken.END_DOCUMENT) {
+                // peek() waited for the response to start, so this times the parse
+                long parseStart = System.nanoTime();
+                Response response = AnalysisOutputParser.readResponse(reader, projectPath);
+                // Skip responses left over from an earlier request that timed out
+                if (response.id != null && response.id == id) {
+                    if ("analyze".equals(request.get("command").getAsString())) {
+                        metrics.parse.record(System.nanoTime() - parseStart);
+                    }
+                    lastHealthyAt = System.currentTimeMillis();
+                    return response;
+                }
+            }
+            throw new IOException("PyCompileCheck daemon exited");
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed PyCompileCheck daemon response", e);
+        } finally {
+            done.set(true);
+        }
+    }
+
+    private void destroy() {
+        if (process != null) {
+            process.destroyForcibly();
+            process = null;
+            writer = null;
+            reader = null;
+        }
+    }
+
+    static @Nullable String findPyCompileCheckPath() {
+        // Try common installation paths
+        String[] possiblePaths = {
+            "/opt/pycompilecheck",
+            System.getProperty("user.home") + "/pycompilecheck",
+            "C:\\pycompilecheck"
+        };
+
+        for (String path : possiblePaths) {
+            if (Files.exists(Paths.get(path, "main.py"))) {
+                return path;
+            }
+        }
+
+        return null;
+    }
+}
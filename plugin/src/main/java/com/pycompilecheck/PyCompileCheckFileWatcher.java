@@ -1,182 +1,257 @@
 package com.pycompilecheck;
 
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.ide.projectView.ProjectView;
+import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.AsyncFileListener;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileAdapter;
-import com.intellij.openapi.vfs.VirtualFileEvent;
-import com.intellij.openapi.vfs.VirtualFileListener;
 import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * File watcher service that monitors Python file changes and triggers
  * PyCompileCheck analysis in real-time.
+ *
+ * <p>VFS events are received as whole batches through an {@link AsyncFileListener},
+ * off the EDT, and filtered through the project file index, so excluded
+ * directories such as virtualenvs or build output never reach the scheduler.</p>
+ *
+ * <p>The analyzer's own I/O never triggers a run: everything below
+ * .pycompilecheck is ignored, and so are content changes that match a
+ * write recorded in the {@link SelfWriteGuard}. Changes the guard held
+ * during a request and then released come back as ordinary edits.</p>
  */
 public class PyCompileCheckFileWatcher {
     
     private static final Logger LOG = Logger.getInstance(PyCompileCheckFileWatcher.class);
     private final Project project;
-    private final VirtualFileListener fileListener;
-    private final ScheduledExecutorService scheduler;
-    private final ExecutorService analysisExecutor;
-    private volatile boolean isAnalysisPending = false;
+    private final AnalysisScheduler scheduler;
+    private final SelfWriteGuard selfWrites;
+    private final Set<String> dirtyPaths = ConcurrentHashMap.newKeySet();
+    private Disposable listenerDisposable;
     
-    public PyCompileCheckFileWatcher(@NotNull Project project) {
+    public PyCompileCheckFileWatcher(@NotNull Project project, @NotNull AnalysisMetrics metrics,
+                                     @NotNull SelfWriteGuard selfWrites) {
         this.project = project;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
-        this.analysisExecutor = Executors.newSingleThreadExecutor();
-        
-        this.fileListener = new VirtualFileAdapter() {
-            @Override
-            public void contentsChanged(@NotNull VirtualFileEvent event) {
-                handleFileChange(event.getFile());
-            }
-            
-            @Override
-            public void fileCreated(@NotNull VirtualFileEvent event) {
-                handleFileChange(event.getFile());
-            }
-            
-            @Override
-            public void fileDeleted(@NotNull VirtualFileEvent event) {
-                handleFileChange(event.getFile());
-            }
-        };
+        this.selfWrites = selfWrites;
+        this.scheduler = new AnalysisScheduler(this::runAnalysis, metrics);
+        selfWrites.setReleaseListener(this::markDirty);
     }
     
     public void startWatching() {
-        VirtualFileManager.getInstance().addVirtualFileListener(fileListener);
+        listenerDisposable = Disposer.newDisposable("PyCompileCheckFileWatcher");
+        VirtualFileManager.getInstance().addAsyncFileListener(this::collectChanges, listenerDisposable);
         LOG.info("PyCompileCheck file watcher started for project: " + project.getName());
     }
     
     public void stopWatching() {
-        VirtualFileManager.getInstance().removeVirtualFileListener(fileListener);
+        if (listenerDisposable != null) {
+            Disposer.dispose(listenerDisposable);
+            listenerDisposable = null;
+        }
         scheduler.shutdown();
-        analysisExecutor.shutdown();
         LOG.info("PyCompileCheck file watcher stopped for project: " + project.getName());
     }
     
-    private void handleFileChange(@NotNull VirtualFile file) {
-        // Only watch Python files in the current project
-        if (!isPythonFile(file) || !isInProject(file)) {
-            return;
+    /**
+     * Picks the relevant paths out of one VFS event batch. Runs in a read
+     * action before the events are applied, so deleted and moved files can
+     * still be looked up in the file index.
+     */
+    private @Nullable AsyncFileListener.ChangeApplier collectChanges(@NotNull List<? extends VFileEvent> events) {
+        if (project.isDisposed()) {
+            return null;
         }
         
-        LOG.info("PyCompileCheck detected change in file: " + file.getPath());
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        Set<String> paths = new HashSet<>();
+        for (VFileEvent event : events) {
+            if (isMetadataPath(event.getPath())) {
+                continue;
+            }
+            if (event instanceof VFileContentChangeEvent) {
+                VFileContentChangeEvent change = (VFileContentChangeEvent) event;
+                VirtualFile file = event.getFile();
+                if (isPythonFile(file.getName()) && fileIndex.isInContent(file)
+                    && !selfWrites.isSelfWrite(event.getPath(), change.getNewLength(), change.getNewTimestamp())) {
+                    paths.add(event.getPath());
+                }
+            } else if (event instanceof VFileCreateEvent) {
+                // The file doesn't exist yet, so its parent decides whether it's in the project
+                VFileCreateEvent create = (VFileCreateEvent) event;
+                if ((create.isDirectory() || isPythonFile(create.getChildName()))
+                    && fileIndex.isInContent(create.getParent())) {
+                    paths.add(event.getPath());
+                }
+            } else if (event instanceof VFileCopyEvent) {
+                VFileCopyEvent copy = (VFileCopyEvent) event;
+                if ((event.getFile().isDirectory() || isPythonFile(copy.getNewChildName()))
+                    && fileIndex.isInContent(copy.getNewParent())) {
+                    paths.add(copy.getNewParent().getPath() + "/" + copy.getNewChildName());
+                }
+            } else if (event instanceof VFileDeleteEvent) {
+                VirtualFile file = event.getFile();
+                if ((file.isDirectory() || isPythonFile(file.getName())) && fileIndex.isInContent(file)) {
+                    paths.add(event.getPath());
+                }
+            } else if (event instanceof VFileMoveEvent) {
+                VFileMoveEvent move = (VFileMoveEvent) event;
+                VirtualFile file = event.getFile();
+                if (file.isDirectory() || isPythonFile(file.getName())) {
+                    if (fileIndex.isInContent(file)) {
+                        paths.add(move.getOldPath());
+                    }
+                    if (fileIndex.isInContent(move.getNewParent())) {
+                        paths.add(move.getNewPath());
+                    }
+                }
+            } else if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename()) {
+                VFilePropertyChangeEvent rename = (VFilePropertyChangeEvent) event;
+                VirtualFile file = event.getFile();
+                if (fileIndex.isInContent(file)) {
+                    if (file.isDirectory() || isPythonFile(rename.getOldPath())) {
+                        paths.add(rename.getOldPath());
+                    }
+                    if (file.isDirectory() || isPythonFile(rename.getNewPath())) {
+                        paths.add(rename.getNewPath());
+                    }
+                }
+            }
+        }
         
-        // Debounce analysis to avoid running too frequently
-        if (!isAnalysisPending) {
-            isAnalysisPending = true;
-            
-            // Schedule analysis with a delay to allow for multiple rapid changes
-            scheduler.schedule(() -> {
-                runAnalysis();
-                isAnalysisPending = false;
-            }, 2, TimeUnit.SECONDS);
+        if (paths.isEmpty()) {
+            return null;
         }
+        
+        return new AsyncFileListener.ChangeApplier() {
+            @Override
+            public void afterVfsChange() {
+                LOG.info("PyCompileCheck detected " + paths.size() + " changed paths");
+                markDirty(paths);
+            }
+        };
+    }
+    
+    private void markDirty(@NotNull Collection<String> paths) {
+        dirtyPaths.addAll(paths);
+        
+        // Debounced; a running analysis is now stale and gets cancelled
+        scheduler.request();
     }
     
-    private boolean isPythonFile(@NotNull VirtualFile file) {
-        return file.getName().endsWith(".py");
+    private static boolean isPythonFile(@NotNull String name) {
+        return name.endsWith(".py");
     }
     
-    private boolean isInProject(@NotNull VirtualFile file) {
-        VirtualFile projectDir = project.getBaseDir();
-        if (projectDir == null) {
-            return false;
+    private static boolean isMetadataPath(@NotNull String path) {
+        return path.endsWith("/" + MetadataStore.METADATA_DIR) || path.contains("/" + MetadataStore.METADATA_DIR + "/");
+    }
+    
+    private void runAnalysis(@NotNull AnalysisScheduler.Cancellation cancellation) {
+        PyCompileCheckProjectService service = project.getService(PyCompileCheckProjectService.class);
+        if (service == null) {
+            return;
+        }
+        
+        // Only re-analyze what changed during the debounce window
+        List<String> paths = new ArrayList<>(dirtyPaths);
+        dirtyPaths.removeAll(paths);
+        if (paths.isEmpty()) {
+            return;
         }
         
-        String filePath = file.getPath();
-        String projectPath = projectDir.getPath();
+        PyCompileCheckResult result = service.runAnalysis(paths, cancellation);
+        
+        if (cancellation.isCancelled()) {
+            // Nothing was recorded for these paths, so the follow-up run takes them
+            dirtyPaths.addAll(paths);
+            return;
+        }
         
-        return filePath.startsWith(projectPath);
+        if (result != null) {
+            LOG.info("PyCompileCheck analysis completed successfully");
+            
+            // Tell which functions and classes changed, from their PSI fingerprints,
+            // and re-validate the importers of modules whose public surface changed
+            Set<String> surfaceChanged = service.getStructureIndexer().annotate(result, cancellation);
+            service.markDependents(result, surfaceChanged);
+            publish(result);
+        } else {
+            LOG.warn("PyCompileCheck analysis failed");
+        }
     }
     
-    private void runAnalysis() {
-        analysisExecutor.submit(() -> {
-            try {
-                // Run the analysis in background
-                String projectPath = project.getBasePath();
-                if (projectPath == null) {
-                    return;
-                }
-                
-                // Find PyCompileCheck installation
-                String pycompilecheckPath = findPyCompileCheckPath();
-                if (pycompilecheckPath == null) {
-                    LOG.warn("PyCompileCheck installation not found");
-                    return;
-                }
-                
-                String integrationScript = pycompilecheckPath + "/plugin/pycharm_integration.py";
-                
-                // Run analysis
-                ProcessBuilder pb = new ProcessBuilder(
-                    "python3", integrationScript, projectPath
-                );
-                pb.redirectErrorStream(true);
-                
-                Process process = pb.start();
-                
-                // Read output
-                StringBuilder output = new StringBuilder();
-                try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(process.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        output.append(line).append("\n");
-                    }
-                }
-                
-                int exitCode = process.waitFor();
-                
-                if (exitCode == 0) {
-                    LOG.info("PyCompileCheck analysis completed successfully");
-                    
-                    // Trigger inspection refresh to show visual indicators
-                    ApplicationManager.getApplication().invokeLater(() -> {
-                        refreshInspections();
-                    });
-                } else {
-                    LOG.warn("PyCompileCheck analysis failed with exit code: " + exitCode);
-                }
-                
-            } catch (Exception e) {
-                LOG.error("Error running PyCompileCheck analysis", e);
-            }
+    /**
+     * Publishes a result so inspections stop using the stale one, saves it
+     * for the next session and refreshes the affected files.
+     */
+    void publish(@NotNull PyCompileCheckResult result) {
+        PyCompileCheckProjectService service = project.getService(PyCompileCheckProjectService.class);
+        if (service == null) {
+            return;
+        }
+        
+        PyCompileCheckResult previous = service.getResultCache().publish(result);
+        if (previous == result) {
+            // Older than the cached result
+            return;
+        }
+        service.saveResult(result);
+        
+        // Trigger inspection refresh to show visual indicators
+        ApplicationManager.getApplication().invokeLater(() -> {
+            refreshInspections(previous, result);
         });
     }
     
-    private @NotNull String findPyCompileCheckPath() {
-        // Try common installation paths
-        String[] possiblePaths = {
-            "/opt/pycompilecheck",
-            System.getProperty("user.home") + "/pycompilecheck",
-            "C:\\pycompilecheck"
-        };
+    private void refreshInspections(@Nullable PyCompileCheckResult previous, @NotNull PyCompileCheckResult current) {
+        if (project.isDisposed()) {
+            return;
+        }
+        
+        // Only files whose change flags differ need new underlines
+        Set<String> changedFiles = current.changedFilesSince(previous);
+        if (changedFiles.isEmpty()) {
+            return;
+        }
         
-        for (String path : possiblePaths) {
-            if (java.nio.file.Files.exists(java.nio.file.Paths.get(path, "main.py"))) {
-                return path;
+        // Restart highlighting for those files if they are open, instead of
+        // announcing a roots change that would re-index and re-highlight everything
+        PsiManager psiManager = PsiManager.getInstance(project);
+        DaemonCodeAnalyzer daemonCodeAnalyzer = DaemonCodeAnalyzer.getInstance(project);
+        for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+            if (file.isValid() && changedFiles.contains(file.getPath())) {
+                PsiFile psiFile = psiManager.findFile(file);
+                if (psiFile != null) {
+                    daemonCodeAnalyzer.restart(psiFile);
+                }
             }
         }
         
-        // Return default path
-        return "/opt/pycompilecheck";
-    }
-    
-    private void refreshInspections() {
-        // Trigger inspection refresh to show new visual indicators
-        // This will cause the inspection to re-run and show underlines
-        project.getMessageBus().syncPublisher(
-            com.intellij.openapi.project.ProjectTopics.PROJECT_ROOTS
-        ).rootsChanged();
+        // Re-decorate the project view from the new result
+        ProjectView.getInstance(project).refresh();
     }
 } 
\ No newline at end of file
@@ -7,9 +7,13 @@ import org.jetbrains.annotations.NotNull;
 
 /**
  * Project component that manages PyCompileCheck file watcher lifecycle.
- * Automatically starts file watching when a project is opened.
+ * Automatically starts file watching when a project is opened, and restores
+ * the result of the last session.
+ *
+ * <p>Dumb-aware, so the restored result shows while the project is still
+ * being indexed; its verification waits for smart mode on its own.</p>
  */
-public class PyCompileCheckProjectComponent implements StartupActivity {
+public class PyCompileCheckProjectComponent implements StartupActivity.DumbAware {
     
     private static final Logger LOG = Logger.getInstance(PyCompileCheckProjectComponent.class);
     
@@ -22,6 +26,9 @@ public class PyCompileCheckProjectComponent implements StartupActivity {
         if (service != null) {
             service.startFileWatching();
             LOG.info("PyCompileCheck file watcher started for project: " + project.getName());
+            
+            // Show the last session's result now; it is verified in the background later
+            service.warmStart();
         } else {
             LOG.warn("PyCompileCheck project service not found for project: " + project.getName());
         }
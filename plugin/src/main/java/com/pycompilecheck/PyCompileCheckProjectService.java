@@ -1,23 +1,98 @@
 package com.pycompilecheck;
 
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
  * Project service that manages PyCompileCheck file watcher for each project.
+ *
+ * <p>On project open the result saved by the last session is published
+ * right away, and checked against disk later by a throttled background
+ * scan that waits for indexing to finish and yields to every foreground
+ * analysis.</p>
  */
-public class PyCompileCheckProjectService {
+public class PyCompileCheckProjectService implements Disposable {
+    
+    private static final Logger LOG = Logger.getInstance(PyCompileCheckProjectService.class);
+    // -Dpycompilecheck.engine=python switches back to the Python analyzer daemon
+    private static final boolean USE_PYTHON_ENGINE = "python".equals(System.getProperty("pycompilecheck.engine"));
+    // -Dpycompilecheck.verifyHashes=true re-hashes every file with SHA-256 instead of trusting stat data
+    private static final boolean VERIFY_HASHES = Boolean.getBoolean("pycompilecheck.verifyHashes");
+    // -Dpycompilecheck.gitIndex=true finds changed files from .git/index instead of walking the project
+    private static final boolean USE_GIT_INDEX = Boolean.getBoolean("pycompilecheck.gitIndex");
+    // -Dpycompilecheck.writeComments=true lets the Python analyzer add TODO comments to changed files
+    private static final boolean WRITE_COMMENTS = Boolean.getBoolean("pycompilecheck.writeComments");
+    // Quiet time after indexing before the restored result is checked against disk
+    private static final long VERIFY_DELAY_SECONDS = 10;
+    // metadata.json is rewritten at most this often, after the runs that changed it
+    private static final long JSON_EXPORT_DELAY_MS = AnalysisMetrics.EXPORT_INTERVAL_MS;
+    // How often a caller waiting for a result checks whether it was cancelled
+    private static final long WAIT_SLICE_MS = 50;
+    // How long a load nobody waits for anymore keeps running, in case highlighting asks again
+    private static final long ABANDON_GRACE_MS = 2_000;
     
     private final Project project;
+    private final AnalysisMetrics metrics;
+    private final PyCompileCheckResultCache resultCache;
+    private final PyCompileCheckDaemon daemon;
+    private final ChangeDetectionEngine engine;
+    private final StructureIndexer structureIndexer;
+    private final ResultStore resultStore;
+    private final SelfWriteGuard selfWrites = new SelfWriteGuard();
     private PyCompileCheckFileWatcher fileWatcher;
+    private ScheduledFuture<?> verificationTask;
+    private volatile AnalysisScheduler.Cancellation verification;
+    private volatile AnalysisScheduler.Cancellation resultLoad;
+    private final AtomicInteger resultWaiters = new AtomicInteger();
+    private final AtomicBoolean restartPending = new AtomicBoolean();
+    private final AtomicBoolean jsonExportPending = new AtomicBoolean();
     
     public PyCompileCheckProjectService(@NotNull Project project) {
         this.project = project;
+        String basePath = project.getBasePath() != null ? project.getBasePath() : "";
+        this.metrics = new AnalysisMetrics(!basePath.isEmpty() ? Paths.get(basePath) : null);
+        this.resultCache = new PyCompileCheckResultCache(metrics);
+        this.daemon = new PyCompileCheckDaemon(basePath, metrics, selfWrites, WRITE_COMMENTS);
+        this.engine = new ChangeDetectionEngine(Paths.get(basePath));
+        this.engine.setVerifyHashes(VERIFY_HASHES);
+        this.structureIndexer = new StructureIndexer(project, basePath);
+        this.resultStore = new ResultStore(Paths.get(basePath));
     }
     
     public void startFileWatching() {
         if (fileWatcher == null) {
-            fileWatcher = new PyCompileCheckFileWatcher(project);
+            fileWatcher = new PyCompileCheckFileWatcher(project, metrics, selfWrites);
             fileWatcher.startWatching();
         }
     }
@@ -32,4 +107,395 @@ public class PyCompileCheckProjectService {
     public boolean isWatching() {
         return fileWatcher != null;
     }
+    
+    /**
+     * Publishes the result saved by the last session so highlights show
+     * before anything is analyzed, then schedules its verification.
+     */
+    public void warmStart() {
+        String basePath = project.getBasePath();
+        if (basePath == null) {
+            return;
+        }
+        
+        if (resultCache.getCachedResult() == null) {
+            PyCompileCheckResult snapshot = resultStore.load(basePath);
+            if (snapshot != null) {
+                // Anything analyzed in this session is newer, whatever the saved generation says
+                snapshot.setGeneration(0L);
+                LOG.info("PyCompileCheck restored " + snapshot.getFileCount() + " reported files from the last session");
+                publish(snapshot);
+            }
+        }
+        scheduleVerification();
+    }
+    
+    /**
+     * Saves a published result for the next session.
+     */
+    void saveResult(@NotNull PyCompileCheckResult result) {
+        try {
+            resultStore.save(result);
+        } catch (IOException e) {
+            LOG.warn("Failed to save PyCompileCheck result: " + e.getMessage());
+        }
+    }
+    
+    private void publish(@NotNull PyCompileCheckResult result) {
+        PyCompileCheckFileWatcher watcher = fileWatcher;
+        if (watcher != null) {
+            watcher.publish(result);
+        } else if (resultCache.publish(result) != result) {
+            saveResult(result);
+        }
+    }
+    
+    /**
+     * Runs {@link #verify()} once indexing is done and the IDE had
+     * {@link #VERIFY_DELAY_SECONDS} to settle.
+     */
+    private void scheduleVerification() {
+        DumbService.getInstance(project).runWhenSmart(() -> {
+            synchronized (this) {
+                if (!project.isDisposed()) {
+                    verificationTask = AppExecutorUtil.getAppScheduledExecutorService()
+                        .schedule(this::verify, VERIFY_DELAY_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Scans the whole project in the background and publishes what changed
+     * since the stored metadata. If nothing did, the restored result stands.
+     */
+    private void verify() {
+        if (project.isDisposed()) {
+            return;
+        }
+        
+        AnalysisScheduler.Cancellation cancellation = new AnalysisScheduler.Cancellation();
+        verification = cancellation;
+        PyCompileCheckResult result;
+        try {
+            result = runAnalysis(null, cancellation, true);
+        } finally {
+            verification = null;
+        }
+        
+        if (result == null) {
+            if (cancellation.isCancelled() && !project.isDisposed()) {
+                // A foreground run took the engine; try again once it is quiet
+                scheduleVerification();
+            }
+            return;
+        }
+        if (result.getFileCount() == 0 && resultCache.getCachedResult() != null) {
+            LOG.info("PyCompileCheck verified the restored result, nothing changed on disk");
+            return;
+        }
+        
+        Set<String> surfaceChanged = structureIndexer.annotate(result, cancellation);
+        markDependents(result, surfaceChanged);
+        publish(result);
+    }
+    
+    private void cancelVerification() {
+        AnalysisScheduler.Cancellation running = verification;
+        if (running != null) {
+            running.cancel();
+        }
+    }
+    
+    public @NotNull AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public @NotNull PyCompileCheckResultCache getResultCache() {
+        return resultCache;
+    }
+    
+    public @NotNull PyCompileCheckDaemon getDaemon() {
+        return daemon;
+    }
+    
+    public @NotNull StructureIndexer getStructureIndexer() {
+        return structureIndexer;
+    }
+    
+    /**
+     * Waits up to the given time for the project-wide result, starting the
+     * analysis if nothing is cached, and checks for cancellation of the
+     * calling progress while it waits. Returns null if the result isn't
+     * there in time; highlighting is then restarted once it is. A load
+     * that every waiter gave up on is cancelled after
+     * {@link #ABANDON_GRACE_MS}, which kills a running Python analyzer.
+     */
+    public @Nullable PyCompileCheckResult awaitResult(long timeoutMs) {
+        CompletableFuture<PyCompileCheckResult> future =
+            resultCache.getOrLoadAsync(this::loadResult, AppExecutorUtil.getAppExecutorService());
+        if (future.isDone()) {
+            return future.getNow(null);
+        }
+        
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        boolean cancelled = true;
+        resultWaiters.incrementAndGet();
+        try {
+            while (true) {
+                ProgressManager.checkCanceled();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    cancelled = false;
+                    restartHighlightingWhenDone(future);
+                    return null;
+                }
+                long slice = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(WAIT_SLICE_MS));
+                try {
+                    PyCompileCheckResult result = future.get(slice, TimeUnit.NANOSECONDS);
+                    cancelled = false;
+                    return result;
+                } catch (TimeoutException e) {
+                    // Check for cancellation and wait again
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                } catch (ExecutionException e) {
+                    // The cache completes loads normally, even failed ones
+                    cancelled = false;
+                    return null;
+                }
+            }
+        } finally {
+            if (resultWaiters.decrementAndGet() == 0 && cancelled && !future.isDone()) {
+                AppExecutorUtil.getAppScheduledExecutorService()
+                    .schedule(this::abandonResultLoad, ABANDON_GRACE_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+    
+    private @Nullable PyCompileCheckResult loadResult() {
+        AnalysisScheduler.Cancellation cancellation = new AnalysisScheduler.Cancellation();
+        resultLoad = cancellation;
+        try {
+            return runAnalysis(null, cancellation);
+        } finally {
+            resultLoad = null;
+        }
+    }
+    
+    private void abandonResultLoad() {
+        AnalysisScheduler.Cancellation running = resultLoad;
+        if (running != null && resultWaiters.get() == 0) {
+            LOG.info("PyCompileCheck cancelling an analysis nobody waits for anymore");
+            running.cancel();
+        }
+    }
+    
+    /**
+     * Restarts highlighting once a load that outlived its waiters finishes,
+     * so editors that got no result pick it up.
+     */
+    private void restartHighlightingWhenDone(@NotNull CompletableFuture<PyCompileCheckResult> future) {
+        if (!restartPending.compareAndSet(false, true)) {
+            return;
+        }
+        future.whenComplete((result, error) -> {
+            restartPending.set(false);
+            if (result != null) {
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (!project.isDisposed()) {
+                        DaemonCodeAnalyzer.getInstance(project).restart();
+                    }
+                });
+            }
+        });
+    }
+    
+    /**
+     * Runs one change detection pass over the project, or returns null if it failed.
+     */
+    public @Nullable PyCompileCheckResult runAnalysis() {
+        return runAnalysis(null);
+    }
+    
+    /**
+     * Runs change detection for the given absolute paths only, or over the
+     * whole project when paths is null. Returns null if the analysis failed.
+     */
+    public @Nullable PyCompileCheckResult runAnalysis(@Nullable Collection<String> paths) {
+        return runAnalysis(paths, null);
+    }
+    
+    /**
+     * Like {@link #runAnalysis(Collection)}, but stops early and returns null
+     * when the given cancellation fires. For the Python engine that kills the
+     * daemon process running the stale analysis.
+     */
+    public @Nullable PyCompileCheckResult runAnalysis(@Nullable Collection<String> paths,
+                                                      @Nullable AnalysisScheduler.Cancellation cancellation) {
+        // Foreground runs take priority over a background verification
+        cancelVerification();
+        return runAnalysis(paths, cancellation, false);
+    }
+    
+    private @Nullable PyCompileCheckResult runAnalysis(@Nullable Collection<String> paths,
+                                                       @Nullable AnalysisScheduler.Cancellation cancellation,
+                                                       boolean background) {
+        String basePath = project.getBasePath();
+        if (basePath == null) {
+            return null;
+        }
+        BooleanSupplier cancelled = cancellation != null ? cancellation::isCancelled : () -> false;
+        
+        if (USE_PYTHON_ENGINE) {
+            // The daemon is shared, so only foreground runs may kill it
+            if (cancellation != null && !background) {
+                cancellation.onCancel(daemon::cancel);
+            }
+            return recordResultSize(daemon.analyze(paths, cancelled));
+        }
+        
+        try {
+            engine.setExcludedRoots(collectExcludedRoots());
+            ChangeReport report;
+            if (paths == null && USE_GIT_INDEX) {
+                // An index read and a stat sweep, cheap enough for background runs too
+                report = engine.analyzeGitIndex(cancelled);
+            } else if (paths == null && background) {
+                report = engine.analyzeProjectInBackground(cancelled);
+            } else if (paths == null) {
+                report = engine.analyzeProject(cancelled);
+            } else {
+                List<Path> files = new ArrayList<>(paths.size());
+                for (String path : paths) {
+                    files.add(Paths.get(path));
+                }
+                report = engine.analyzePaths(files, cancelled);
+            }
+            LOG.info("PyCompileCheck scanned " + report.getFileCount() + " files (" + report.getHashedFileCount()
+                + " hashed) in " + report.getDurationMillis() + " ms, " + report.getChanges().size() + " changed");
+            metrics.walk.record(report.getWalkNanos());
+            metrics.hash.record(report.getHashNanos());
+            
+            long parseStart = System.nanoTime();
+            PyCompileCheckResult result = PyCompileCheckResult.fromReport(report, basePath);
+            metrics.parse.record(System.nanoTime() - parseStart);
+            scheduleJsonExport();
+            return recordResultSize(result);
+        } catch (CancellationException e) {
+            LOG.info("PyCompileCheck change detection cancelled");
+            return null;
+        } catch (IOException e) {
+            LOG.warn("PyCompileCheck change detection failed: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Writes metadata.json {@link #JSON_EXPORT_DELAY_MS} after a run, so the
+     * Python CLI and other tooling see the engine's state during the session.
+     * The runs in between are covered by the same export.
+     */
+    private void scheduleJsonExport() {
+        if (!jsonExportPending.compareAndSet(false, true)) {
+            return;
+        }
+        AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
+            jsonExportPending.set(false);
+            if (project.isDisposed()) {
+                return;
+            }
+            try {
+                engine.exportJsonIfDirty();
+            } catch (IOException e) {
+                LOG.warn("Failed to write PyCompileCheck metadata.json: " + e.getMessage());
+            }
+        }, JSON_EXPORT_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * The folders excluded in the project structure, so the engine prunes
+     * them like the file watcher ignores them.
+     */
+    private @NotNull List<Path> collectExcludedRoots() {
+        return ApplicationManager.getApplication().runReadAction((Computable<List<Path>>) () -> {
+            List<Path> roots = new ArrayList<>();
+            if (project.isDisposed()) {
+                return roots;
+            }
+            for (Module module : ModuleManager.getInstance(project).getModules()) {
+                for (VirtualFile root : ModuleRootManager.getInstance(module).getExcludeRoots()) {
+                    if (root.isInLocalFileSystem()) {
+                        roots.add(Paths.get(root.getPath()));
+                    }
+                }
+            }
+            return roots;
+        });
+    }
+    
+    private @Nullable PyCompileCheckResult recordResultSize(@Nullable PyCompileCheckResult result) {
+        if (result != null) {
+            metrics.resultSize.record(result.getFileCount());
+        }
+        return result;
+    }
+    
+    /**
+     * Marks every file that imports one of the given modules, directly or
+     * transitively, so it gets re-validated. Modules are absolute paths of
+     * files whose public surface changed.
+     */
+    public void markDependents(@NotNull PyCompileCheckResult result, @NotNull Collection<String> changedModules) {
+        String basePath = project.getBasePath();
+        if (basePath == null || changedModules.isEmpty()) {
+            return;
+        }
+        
+        try {
+            Path root = Paths.get(basePath);
+            List<String> relPaths = new ArrayList<>(changedModules.size());
+            for (String module : changedModules) {
+                relPaths.add(root.relativize(Paths.get(module)).toString());
+            }
+            
+            Map<String, String> dependents = engine.getImportGraph().dependentsOf(relPaths);
+            for (Map.Entry<String, String> dependent : dependents.entrySet()) {
+                result.addRelativeDependency(dependent.getKey(), dependent.getValue());
+            }
+            if (!dependents.isEmpty()) {
+                LOG.info("PyCompileCheck marked " + dependents.size() + " dependent files for re-validation");
+            }
+        } catch (IOException e) {
+            LOG.warn("PyCompileCheck import graph unavailable: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            if (verificationTask != null) {
+                verificationTask.cancel(false);
+            }
+        }
+        cancelVerification();
+        AnalysisScheduler.Cancellation load = resultLoad;
+        if (load != null) {
+            load.cancel();
+        }
+        PyCompileCheckResult result = resultCache.getCachedResult();
+        if (result != null) {
+            saveResult(result);
+        }
+        stopFileWatching();
+        daemon.stop();
+        engine.shutdown();
+        structureIndexer.save();
+        try {
+            metrics.export();
+        } catch (IOException e) {
+            LOG.warn("Failed to write PyCompileCheck stats: " + e.getMessage());
+        }
+    }
 } 
\ No newline at end of file
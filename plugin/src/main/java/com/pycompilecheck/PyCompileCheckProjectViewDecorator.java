@@ -0,0 +1,39 @@
+package com.pycompilecheck;
+
+import com.intellij.ide.projectView.PresentationData;
+import com.intellij.ide.projectView.ProjectViewNode;
+import com.intellij.ide.projectView.ProjectViewNodeDecorator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.JBColor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Colors files and directories with PyCompileCheck changes in the project view.
+ * Reads the shared cached result only and never triggers an analysis.
+ */
+public class PyCompileCheckProjectViewDecorator implements ProjectViewNodeDecorator {
+
+    @Override
+    public void decorate(@NotNull ProjectViewNode<?> node, @NotNull PresentationData data) {
+        Project project = node.getProject();
+        VirtualFile file = node.getVirtualFile();
+        if (project == null || file == null) {
+            return;
+        }
+
+        PyCompileCheckProjectService service = project.getService(PyCompileCheckProjectService.class);
+        PyCompileCheckResult result = service != null ? service.getResultCache().getCachedResult() : null;
+        if (result == null || !result.hasChangesUnder(file.getPath())) {
+            return;
+        }
+
+        // Red for content changes, orange when only imports or size changed
+        int flags = result.getFlags(file.getPath());
+        boolean content = file.isDirectory() || (flags & PyCompileCheckResult.CONTENT) != 0;
+        data.setForcedTextForeground(content ? JBColor.RED : JBColor.ORANGE);
+        data.setTooltip(file.isDirectory()
+            ? "PyCompileCheck detected changes in this directory"
+            : "PyCompileCheck detected changes");
+    }
+}
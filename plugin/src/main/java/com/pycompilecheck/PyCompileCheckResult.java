@@ -0,0 +1,499 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Result of a PyCompileCheck analysis, shared by the inspection and the
+ * project view.
+ *
+ * <p>Paths are stored relative to the project root in a prefix tree whose
+ * nodes are int indices: each path segment is interned once, and the change
+ * flags of a node and of everything below it are packed into two int arrays.
+ * Edges live in an open-addressing table of (parent, segment) keys, and the
+ * rarer per-file details in arrays indexed by node that are only allocated
+ * once the first file needs them. That keeps per-file overhead to a few array
+ * slots and answers "does anything under this directory have changes" by
+ * walking a single path.</p>
+ */
+public class PyCompileCheckResult {
+
+    public static final int CONTENT = 1;
+    public static final int IMPORTS = 1 << 1;
+    public static final int SIZE = 1 << 2;
+    /** Set for every file the analyzer reported, even if no other flag is set. */
+    public static final int REPORTED = 1 << 3;
+    /** Set for files importing a module whose public surface changed. */
+    public static final int DEPENDENCY = 1 << 4;
+
+    private static final int ROOT = 0;
+    private static final int INITIAL_NODES = 64;
+
+    private final String projectPath;
+    private final Map<String, Integer> segmentIds = new HashMap<>();
+    private final List<String> segments = new ArrayList<>();
+    // Edge table: (parent << 32 | segment) keys, child node or 0 for a free slot
+    private long[] childKeys = new long[2 * INITIAL_NODES];
+    private int[] childNodes = new int[2 * INITIAL_NODES];
+    private int[] flags = new int[INITIAL_NODES];
+    private int[] subtreeFlags = new int[INITIAL_NODES];
+    private int[] parents = new int[INITIAL_NODES];
+    private int[] nodeSegments = new int[INITIAL_NODES];
+    // Per-node details, null until a node has one
+    private String @Nullable [] sizeChangeInfo;
+    private int @Nullable [][] changedLines;
+    // A list rather than an array, which can't have a generic element type
+    private @Nullable List<List<SymbolChange>> symbolChanges;
+    private String @Nullable [] dependencyCauses;
+    private int nodeCount = 1;
+    private int fileCount;
+    private long generation;
+
+    public PyCompileCheckResult(@NotNull String projectPath) {
+        this.projectPath = trimTrailingSeparator(projectPath);
+    }
+
+    /**
+     * Builds the result of a {@link ChangeDetectionEngine} run.
+     */
+    public static @NotNull PyCompileCheckResult fromReport(@NotNull ChangeReport report, @NotNull String projectPath) {
+        PyCompileCheckResult result = new PyCompileCheckResult(projectPath);
+        result.setGeneration(report.getGeneration());
+
+        for (FileChange change : report.getChanges()) {
+            result.addRelativeChange(
+                change.getFile(),
+                change.isContentChanged(),
+                change.isImportsChanged(),
+                change.isSizeChanged(),
+                change.getSizeChangeInfo(),
+                change.getChangedLines()
+            );
+        }
+
+        return result;
+    }
+
+    public @NotNull String getProjectPath() {
+        return projectPath;
+    }
+
+    /**
+     * Metadata generation this result was produced from. Newer analyses
+     * have higher generations.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Number of files the analyzer reported.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public boolean hasChanges(String filePath) {
+        return (getFlags(filePath) & REPORTED) != 0;
+    }
+
+    public boolean hasContentChanges(String filePath) {
+        return (getFlags(filePath) & CONTENT) != 0;
+    }
+
+    public boolean hasImportChanges(String filePath) {
+        return (getFlags(filePath) & IMPORTS) != 0;
+    }
+
+    public boolean hasSizeChanges(String filePath) {
+        return (getFlags(filePath) & SIZE) != 0;
+    }
+
+    public boolean hasDependencyChanges(String filePath) {
+        return (getFlags(filePath) & DEPENDENCY) != 0;
+    }
+
+    /**
+     * Path, relative to the project root, of the imported module whose
+     * change made this file need re-validation, or null.
+     */
+    public @Nullable String getDependencyCause(String filePath) {
+        return get(dependencyCauses, find(filePath));
+    }
+
+    public String getSizeChangeInfo(String filePath) {
+        String info = get(sizeChangeInfo, find(filePath));
+        return info != null ? info : "";
+    }
+
+    /**
+     * Returns the changed lines of a file as flattened [startLine, endLine)
+     * pairs, or null if they are unknown and the whole file should be treated
+     * as changed.
+     */
+    public int @Nullable [] getChangedLines(String filePath) {
+        return get(changedLines, find(filePath));
+    }
+
+    /**
+     * Returns the functions and classes that changed in a file, if the file
+     * was fingerprinted before and after the change.
+     */
+    public @NotNull List<SymbolChange> getSymbolChanges(String filePath) {
+        List<SymbolChange> changes = symbolChangesOf(find(filePath));
+        return changes != null ? changes : Collections.emptyList();
+    }
+
+    /**
+     * Attaches symbol changes to a reported file. Unreported files are ignored.
+     */
+    public void setSymbolChanges(@NotNull String filePath, @NotNull List<SymbolChange> changes) {
+        int node = find(filePath);
+        if (node < 0 || (flags[node] & REPORTED) == 0) {
+            return;
+        }
+        if (changes.isEmpty()) {
+            if (symbolChanges != null) {
+                symbolChanges.set(node, null);
+            }
+        } else {
+            if (symbolChanges == null) {
+                symbolChanges = new ArrayList<>(Collections.nCopies(flags.length, null));
+            }
+            symbolChanges.set(node, new ArrayList<>(changes));
+        }
+    }
+
+    /**
+     * Returns the packed change flags of a file, or 0 if it wasn't reported.
+     */
+    public int getFlags(@Nullable String filePath) {
+        int node = find(filePath);
+        return node >= 0 ? flags[node] : 0;
+    }
+
+    /**
+     * Returns true if the given file or directory, or anything below it, has
+     * content, import or size changes. The project root covers everything.
+     */
+    public boolean hasChangesUnder(@Nullable String path) {
+        int node = find(path);
+        return node >= 0 && ((flags[node] | subtreeFlags[node]) & (CONTENT | IMPORTS | SIZE)) != 0;
+    }
+
+    public void addChange(String filePath, boolean content, boolean imports, boolean size, String sizeInfo) {
+        String relPath = relativize(filePath);
+        if (relPath != null) {
+            addRelativeChange(relPath, content, imports, size, sizeInfo);
+        }
+    }
+
+    /**
+     * Adds a file by its path relative to the project root, without building
+     * an absolute path first.
+     */
+    public void addRelativeChange(@NotNull String relPath, boolean content, boolean imports,
+                                  boolean size, @Nullable String sizeInfo) {
+        addRelativeChange(relPath, content, imports, size, sizeInfo, null);
+    }
+
+    /**
+     * Like {@link #addRelativeChange(String, boolean, boolean, boolean, String)},
+     * with the changed line ranges of the file if they are known.
+     */
+    public void addRelativeChange(@NotNull String relPath, boolean content, boolean imports,
+                                  boolean size, @Nullable String sizeInfo, int @Nullable [] lines) {
+        int node = createNode(relPath);
+        if (node == ROOT) {
+            return;
+        }
+
+        int value = REPORTED | (content ? CONTENT : 0) | (imports ? IMPORTS : 0) | (size ? SIZE : 0);
+        if ((flags[node] & REPORTED) == 0) {
+            fileCount++;
+        }
+        flags[node] = value | (flags[node] & DEPENDENCY);
+        if (size && sizeInfo != null && !sizeInfo.isEmpty()) {
+            if (sizeChangeInfo == null) {
+                sizeChangeInfo = new String[flags.length];
+            }
+            sizeChangeInfo[node] = sizeInfo;
+        } else {
+            set(sizeChangeInfo, node, null);
+        }
+        if (lines != null) {
+            if (changedLines == null) {
+                changedLines = new int[flags.length][];
+            }
+            changedLines[node] = lines;
+        } else {
+            set(changedLines, node, null);
+        }
+
+        // Propagate to every ancestor so directory queries stay O(depth)
+        for (int parent = parents[node]; parent >= 0; parent = parent == ROOT ? -1 : parents[parent]) {
+            subtreeFlags[parent] |= value;
+        }
+    }
+
+    /**
+     * Marks a file, by path relative to the project root, as depending on a
+     * changed module. The file is reported if it wasn't already.
+     */
+    public void addRelativeDependency(@NotNull String relPath, @NotNull String causeRelPath) {
+        int node = createNode(relPath);
+        if (node == ROOT) {
+            return;
+        }
+
+        if ((flags[node] & REPORTED) == 0) {
+            fileCount++;
+        }
+        flags[node] |= REPORTED | DEPENDENCY;
+        if (dependencyCauses == null) {
+            dependencyCauses = new String[flags.length];
+        }
+        dependencyCauses[node] = causeRelPath;
+        for (int parent = parents[node]; parent >= 0; parent = parent == ROOT ? -1 : parents[parent]) {
+            subtreeFlags[parent] |= REPORTED | DEPENDENCY;
+        }
+    }
+
+    /**
+     * Returns the absolute paths of all reported files, with '/' separators.
+     */
+    public @NotNull List<String> getReportedFiles() {
+        List<String> files = new ArrayList<>(fileCount);
+        for (int node = 1; node < nodeCount; node++) {
+            if ((flags[node] & REPORTED) != 0) {
+                files.add(projectPath + "/" + relativePath(node));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the absolute paths of all files whose flags, size change info,
+     * changed lines or symbol changes differ from the previous result, including files that are no longer
+     * reported. Paths use '/' separators, like VirtualFile paths.
+     */
+    public @NotNull Set<String> changedFilesSince(@Nullable PyCompileCheckResult previous) {
+        Set<String> changed = new HashSet<>();
+
+        for (int node = 1; node < nodeCount; node++) {
+            if ((flags[node] & REPORTED) == 0) {
+                continue;
+            }
+            String relPath = relativePath(node);
+            if (previous == null || !sameChange(node, previous, previous.findRelative(relPath))) {
+                changed.add(projectPath + "/" + relPath);
+            }
+        }
+
+        if (previous != null) {
+            for (int node = 1; node < previous.nodeCount; node++) {
+                if ((previous.flags[node] & REPORTED) == 0) {
+                    continue;
+                }
+                String relPath = previous.relativePath(node);
+                int own = findRelative(relPath);
+                if (own < 0 || (flags[own] & REPORTED) == 0) {
+                    changed.add(previous.projectPath + "/" + relPath);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean sameChange(int node, @NotNull PyCompileCheckResult other, int otherNode) {
+        return otherNode >= 0
+            && flags[node] == other.flags[otherNode]
+            && Objects.equals(get(sizeChangeInfo, node), get(other.sizeChangeInfo, otherNode))
+            && Arrays.equals(get(changedLines, node), get(other.changedLines, otherNode))
+            && Objects.equals(symbolChangesOf(node), other.symbolChangesOf(otherNode))
+            && Objects.equals(get(dependencyCauses, node), get(other.dependencyCauses, otherNode));
+    }
+
+    private @Nullable List<SymbolChange> symbolChangesOf(int node) {
+        return symbolChanges != null && node >= 0 ? symbolChanges.get(node) : null;
+    }
+
+    private static <T> @Nullable T get(T @Nullable [] values, int node) {
+        return values != null && node >= 0 ? values[node] : null;
+    }
+
+    private static <T> void set(T @Nullable [] values, int node, @Nullable T value) {
+        if (values != null) {
+            values[node] = value;
+        }
+    }
+
+    private @NotNull String relativePath(int node) {
+        StringBuilder path = new StringBuilder(segments.get(nodeSegments[node]));
+        for (int parent = parents[node]; parent != ROOT; parent = parents[parent]) {
+            path.insert(0, '/').insert(0, segments.get(nodeSegments[parent]));
+        }
+        return path.toString();
+    }
+
+    private int find(@Nullable String path) {
+        String relPath = path != null ? relativize(path) : null;
+        return relPath != null ? findRelative(relPath) : -1;
+    }
+
+    private int createNode(@NotNull String relPath) {
+        int node = ROOT;
+        int start = 0;
+        int length = relPath.length();
+        while (start < length) {
+            int end = nextSeparator(relPath, start);
+            if (end > start) {
+                node = child(node, relPath.substring(start, end), true);
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    private int findRelative(@NotNull String relPath) {
+        int node = ROOT;
+        int start = 0;
+        int length = relPath.length();
+        while (start < length && node >= 0) {
+            int end = nextSeparator(relPath, start);
+            if (end > start) {
+                node = child(node, relPath.substring(start, end), false);
+            }
+            start = end + 1;
+        }
+        return node;
+    }
+
+    private int child(int parent, @NotNull String segment, boolean create) {
+        Integer segmentId = segmentIds.get(segment);
+        if (segmentId == null) {
+            if (!create) {
+                return -1;
+            }
+            segmentId = segments.size();
+            segmentIds.put(segment, segmentId);
+            segments.add(segment);
+        }
+
+        long key = ((long) parent << 32) | segmentId;
+        int mask = childKeys.length - 1;
+        int slot = slotOf(key, mask);
+        while (childNodes[slot] != 0) {
+            if (childKeys[slot] == key) {
+                return childNodes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return -1;
+        }
+
+        int node = nodeCount++;
+        if (node == flags.length) {
+            growNodes(flags.length * 2);
+        }
+        parents[node] = parent;
+        nodeSegments[node] = segmentId;
+        childKeys[slot] = key;
+        childNodes[slot] = node;
+        if (2 * nodeCount > childKeys.length) {
+            // Keep the edge table at most half full
+            rehashChildren(childKeys.length * 2);
+        }
+        return node;
+    }
+
+    private void growNodes(int capacity) {
+        flags = Arrays.copyOf(flags, capacity);
+        subtreeFlags = Arrays.copyOf(subtreeFlags, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        nodeSegments = Arrays.copyOf(nodeSegments, capacity);
+        if (sizeChangeInfo != null) {
+            sizeChangeInfo = Arrays.copyOf(sizeChangeInfo, capacity);
+        }
+        if (changedLines != null) {
+            changedLines = Arrays.copyOf(changedLines, capacity);
+        }
+        if (symbolChanges != null) {
+            symbolChanges.addAll(Collections.nCopies(capacity - symbolChanges.size(), null));
+        }
+        if (dependencyCauses != null) {
+            dependencyCauses = Arrays.copyOf(dependencyCauses, capacity);
+        }
+    }
+
+    private void rehashChildren(int capacity) {
+        long[] oldKeys = childKeys;
+        int[] oldNodes = childNodes;
+        childKeys = new long[capacity];
+        childNodes = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldNodes[i] != 0) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (childNodes[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                childKeys[slot] = oldKeys[i];
+                childNodes[slot] = oldNodes[i];
+            }
+        }
+    }
+
+    private static int slotOf(long key, int mask) {
+        // Spread the bits of both halves; consecutive ids would otherwise cluster
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private @Nullable String relativize(@NotNull String path) {
+        if (!path.startsWith(projectPath)) {
+            return null;
+        }
+        if (path.length() == projectPath.length()) {
+            return "";
+        }
+        char next = path.charAt(projectPath.length());
+        if (next != '/' && next != '\\') {
+            return null;
+        }
+        return path.substring(projectPath.length() + 1);
+    }
+
+    private static int nextSeparator(@NotNull String path, int from) {
+        for (int i = from; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' || c == '\\') {
+                return i;
+            }
+        }
+        return path.length();
+    }
+
+    private static @NotNull String trimTrailingSeparator(@NotNull String path) {
+        int end = path.length();
+        while (end > 1 && (path.charAt(end - 1) == '/' || path.charAt(end - 1) == '\\')) {
+            end--;
+        }
+        return path.substring(0, end);
+    }
+}
@@ -0,0 +1,127 @@
+package com.pycompilecheck;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Project-wide cache of the latest PyCompileCheck analysis result.
+ * The cached result is tied to the metadata generation it was produced
+ * from (see {@link PyCompileCheckResult#getGeneration()}), and concurrent
+ * callers share a single in-flight analysis instead of each starting one.
+ * Loads run on an executor, so callers decide how long to wait for them.
+ * Lookups are counted in {@link AnalysisMetrics}: a lookup that runs the
+ * loader is a miss, one served from the cache or a shared load is a hit.
+ */
+public class PyCompileCheckResultCache {
+
+    private static final Logger LOG = Logger.getInstance(PyCompileCheckResultCache.class);
+
+    private final AnalysisMetrics metrics;
+    private final Object lock = new Object();
+    private @Nullable PyCompileCheckResult cached;
+    private @Nullable CompletableFuture<PyCompileCheckResult> inFlight;
+
+    public PyCompileCheckResultCache(@NotNull AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the cached result, or starts the loader on the given executor
+     * if nothing is cached yet. Callers arriving while a load is running get
+     * that load's future instead of starting their own. The future completes
+     * with null if the load failed, and never exceptionally.
+     */
+    public @NotNull CompletableFuture<PyCompileCheckResult> getOrLoadAsync(@NotNull Supplier<PyCompileCheckResult> loader,
+                                                                          @NotNull Executor executor) {
+        CompletableFuture<PyCompileCheckResult> future;
+        synchronized (lock) {
+            if (cached != null) {
+                metrics.recordCacheHit();
+                return CompletableFuture.completedFuture(cached);
+            }
+            if (inFlight != null) {
+                metrics.recordCacheHit();
+                return inFlight;
+            }
+            inFlight = new CompletableFuture<>();
+            future = inFlight;
+        }
+        metrics.recordCacheMiss();
+
+        try {
+            executor.execute(() -> load(loader, future));
+        } catch (RejectedExecutionException e) {
+            // The executor is shutting down with the application
+            finishLoad(null, future);
+        }
+        return future;
+    }
+
+    private void load(@NotNull Supplier<PyCompileCheckResult> loader,
+                      @NotNull CompletableFuture<PyCompileCheckResult> future) {
+        PyCompileCheckResult result = null;
+        try {
+            result = loader.get();
+        } catch (RuntimeException e) {
+            LOG.warn("PyCompileCheck result load failed: " + e.getMessage());
+        } finally {
+            finishLoad(result, future);
+        }
+    }
+
+    private void finishLoad(@Nullable PyCompileCheckResult result,
+                            @NotNull CompletableFuture<PyCompileCheckResult> future) {
+        PyCompileCheckResult current;
+        synchronized (lock) {
+            // A published result always wins over a load that started before it
+            if (result != null && cached == null) {
+                cached = result;
+            }
+            current = cached != null ? cached : result;
+            inFlight = null;
+        }
+        future.complete(current);
+    }
+
+    /**
+     * Returns the cached result without triggering an analysis.
+     */
+    public @Nullable PyCompileCheckResult getCachedResult() {
+        synchronized (lock) {
+            return cached;
+        }
+    }
+
+    /**
+     * Replaces the cached result with one produced by the file watcher.
+     * Results for an older metadata generation than the cached one are ignored.
+     * Generations are epoch milliseconds for both engines, see
+     * {@link BinaryMetadataStore#nextGeneration()}.
+     *
+     * @return the result that was replaced, null if there was none, or the
+     *         given result itself if it was ignored
+     */
+    public @Nullable PyCompileCheckResult publish(@NotNull PyCompileCheckResult result) {
+        synchronized (lock) {
+            if (cached != null && cached.getGeneration() > result.getGeneration()) {
+                LOG.info("PyCompileCheck ignoring result for stale metadata generation " + result.getGeneration());
+                return result;
+            }
+            PyCompileCheckResult previous = cached;
+            cached = result;
+            return previous;
+        }
+    }
+
+    public long getGeneration() {
+        synchronized (lock) {
+            return cached != null ? cached.getGeneration() : 0L;
+        }
+    }
+}
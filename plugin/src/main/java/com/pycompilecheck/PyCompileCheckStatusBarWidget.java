@@ -0,0 +1,95 @@
+package com.pycompilecheck;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.util.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.Component;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+
+/**
+ * Status bar text showing the duration of the last analysis, with the full
+ * {@link AnalysisMetrics} in the tooltip. Clicking it writes the stats file
+ * right away. Refreshed after every analysis run.
+ */
+public class PyCompileCheckStatusBarWidget implements StatusBarWidget, StatusBarWidget.TextPresentation {
+
+    static final String ID = "PyCompileCheck.Stats";
+    private static final Logger LOG = Logger.getInstance(PyCompileCheckStatusBarWidget.class);
+
+    private final AnalysisMetrics metrics;
+    private final Runnable listener = this::update;
+    private @Nullable StatusBar statusBar;
+
+    public PyCompileCheckStatusBarWidget(@NotNull AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public @NotNull String ID() {
+        return ID;
+    }
+
+    @Override
+    public void install(@NotNull StatusBar statusBar) {
+        this.statusBar = statusBar;
+        metrics.addListener(listener);
+    }
+
+    @Override
+    public void dispose() {
+        metrics.removeListener(listener);
+        statusBar = null;
+    }
+
+    @Override
+    public @NotNull WidgetPresentation getPresentation() {
+        return this;
+    }
+
+    @Override
+    public @NotNull String getText() {
+        if (metrics.getInFlight() > 0) {
+            return "PyCompileCheck: analyzing";
+        }
+        AnalysisMetrics.Histogram analysis = metrics.analysis;
+        return analysis.getCount() == 0
+            ? "PyCompileCheck: idle"
+            : "PyCompileCheck: " + Math.round(analysis.getLast()) + " ms";
+    }
+
+    @Override
+    public float getAlignment() {
+        return Component.CENTER_ALIGNMENT;
+    }
+
+    @Override
+    public @NotNull String getTooltipText() {
+        return "<html>" + String.join("<br>", metrics.describe()) + "<br><br>Click to write .pycompilecheck/stats.json</html>";
+    }
+
+    @Override
+    public @NotNull Consumer<MouseEvent> getClickConsumer() {
+        return event -> ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                metrics.export();
+            } catch (IOException e) {
+                LOG.warn("Failed to write PyCompileCheck stats: " + e.getMessage());
+            }
+        });
+    }
+
+    private void update() {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            StatusBar bar = statusBar;
+            if (bar != null) {
+                bar.updateWidget(ID);
+            }
+        });
+    }
+}
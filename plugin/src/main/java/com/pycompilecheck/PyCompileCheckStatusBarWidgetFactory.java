@@ -0,0 +1,44 @@
+package com.pycompilecheck;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.StatusBar;
+import com.intellij.openapi.wm.StatusBarWidget;
+import com.intellij.openapi.wm.StatusBarWidgetFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Adds the PyCompileCheck analysis stats widget to the status bar of
+ * projects that have the project service.
+ */
+public class PyCompileCheckStatusBarWidgetFactory implements StatusBarWidgetFactory {
+
+    @Override
+    public @NotNull String getId() {
+        return PyCompileCheckStatusBarWidget.ID;
+    }
+
+    @Override
+    public @NotNull String getDisplayName() {
+        return "PyCompileCheck Analysis Stats";
+    }
+
+    @Override
+    public boolean isAvailable(@NotNull Project project) {
+        return project.getService(PyCompileCheckProjectService.class) != null;
+    }
+
+    @Override
+    public @NotNull StatusBarWidget createWidget(@NotNull Project project) {
+        return new PyCompileCheckStatusBarWidget(project.getService(PyCompileCheckProjectService.class).getMetrics());
+    }
+
+    @Override
+    public void disposeWidget(@NotNull StatusBarWidget widget) {
+        widget.dispose();
+    }
+
+    @Override
+    public boolean canBeEnabledOn(@NotNull StatusBar statusBar) {
+        return true;
+    }
+}
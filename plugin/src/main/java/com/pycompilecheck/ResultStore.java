@@ -0,0 +1,146 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the latest {@link PyCompileCheckResult} in
+ * .pycompilecheck/result.bin, so a reopened project shows its highlights
+ * before anything has been analyzed.
+ */
+public class ResultStore {
+
+    static final String RESULT_FILE = "result.bin";
+
+    private static final int MAGIC = 0x50434352; // "PCCR"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private @Nullable PyCompileCheckResult saved;
+
+    public ResultStore(@NotNull Path projectRoot) {
+        this.file = projectRoot.resolve(MetadataStore.METADATA_DIR).resolve(RESULT_FILE);
+    }
+
+    /**
+     * Reads the saved result for the given project path, or returns null if
+     * there is none or it can't be read.
+     */
+    public synchronized @Nullable PyCompileCheckResult load(@NotNull String projectPath) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        SymbolFingerprint.Kind[] kinds = SymbolFingerprint.Kind.values();
+        SymbolChange.Type[] types = SymbolChange.Type.values();
+        PyCompileCheckResult result = new PyCompileCheckResult(projectPath);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            result.setGeneration(in.readLong());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String relPath = in.readUTF();
+                int flags = in.readInt();
+                String sizeInfo = in.readUTF();
+                int lineCount = in.readInt();
+                int[] lines = null;
+                if (lineCount >= 0) {
+                    lines = new int[lineCount];
+                    for (int j = 0; j < lineCount; j++) {
+                        lines[j] = in.readInt();
+                    }
+                }
+                String cause = in.readBoolean() ? in.readUTF() : null;
+                int symbolCount = in.readInt();
+                List<SymbolChange> symbols = new ArrayList<>(symbolCount);
+                for (int j = 0; j < symbolCount; j++) {
+                    String name = in.readUTF();
+                    int kind = in.readByte();
+                    int type = in.readByte();
+                    if (kind < 0 || kind >= kinds.length || type < 0 || type >= types.length) {
+                        return null;
+                    }
+                    symbols.add(new SymbolChange(name, kinds[kind], types[type], in.readUTF()));
+                }
+
+                // Files reported only as dependents never went through addRelativeChange
+                int changeFlags = PyCompileCheckResult.CONTENT | PyCompileCheckResult.IMPORTS | PyCompileCheckResult.SIZE;
+                if ((flags & PyCompileCheckResult.DEPENDENCY) == 0 || (flags & changeFlags) != 0) {
+                    result.addRelativeChange(relPath,
+                        (flags & PyCompileCheckResult.CONTENT) != 0,
+                        (flags & PyCompileCheckResult.IMPORTS) != 0,
+                        (flags & PyCompileCheckResult.SIZE) != 0,
+                        sizeInfo, lines);
+                }
+                if (cause != null) {
+                    result.addRelativeDependency(relPath, cause);
+                }
+                result.setSymbolChanges(result.getProjectPath() + "/" + relPath, symbols);
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        saved = result;
+        return result;
+    }
+
+    /**
+     * Writes the result to result.bin, unless it is the one last saved or loaded.
+     */
+    public synchronized void save(@NotNull PyCompileCheckResult result) throws IOException {
+        if (result == saved) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(RESULT_FILE + ".tmp");
+        int prefixLength = result.getProjectPath().length() + 1;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            List<String> files = result.getReportedFiles();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(result.getGeneration());
+            out.writeInt(files.size());
+            for (String path : files) {
+                out.writeUTF(path.substring(prefixLength));
+                out.writeInt(result.getFlags(path));
+                out.writeUTF(result.getSizeChangeInfo(path));
+                int[] lines = result.getChangedLines(path);
+                out.writeInt(lines != null ? lines.length : -1);
+                if (lines != null) {
+                    for (int line : lines) {
+                        out.writeInt(line);
+                    }
+                }
+                String cause = result.getDependencyCause(path);
+                out.writeBoolean(cause != null);
+                if (cause != null) {
+                    out.writeUTF(cause);
+                }
+                List<SymbolChange> symbols = result.getSymbolChanges(path);
+                out.writeInt(symbols.size());
+                for (SymbolChange symbol : symbols) {
+                    out.writeUTF(symbol.getName());
+                    out.writeByte(symbol.getKind().ordinal());
+                    out.writeByte(symbol.getType().ordinal());
+                    out.writeUTF(symbol.getSignature());
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        saved = result;
+    }
+}
@@ -0,0 +1,129 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Remembers the source files the analyzer itself rewrote, with the length
+ * and timestamp it left them with, so the file watcher can tell the VFS
+ * event of that write from a user edit and not analyze the file again.
+ * A write is forgotten once its event was seen, or after
+ * {@link #EXPIRY_MS} if the VFS never noticed it.
+ *
+ * <p>The VFS may see a write before the analyzer's response names it.
+ * While a request that may write is running, content changes of the paths
+ * it covers are therefore held. When it ends, held changes that match one
+ * of its writes are dropped and the others are released as edits.</p>
+ */
+public class SelfWriteGuard {
+
+    static final long EXPIRY_MS = 60_000;
+
+    private final Map<String, Write> writes = new ConcurrentHashMap<>();
+    // Guarded by this
+    private @Nullable List<String> requestScope;
+    private final Map<String, Write> held = new HashMap<>();
+    private volatile Consumer<Collection<String>> releaseListener = paths -> {};
+
+    /**
+     * Records a write of the analyzer, by absolute path with '/' separators
+     * and the timestamp in milliseconds.
+     */
+    public void record(@NotNull String path, long length, long timestamp) {
+        long now = System.currentTimeMillis();
+        writes.values().removeIf(write -> now - write.recordedAt > EXPIRY_MS);
+        writes.put(path, new Write(length, timestamp, now));
+    }
+
+    /**
+     * Whether a content change of the given file is the analyzer's own
+     * write. A match is consumed, so a later edit that happens to leave the
+     * same length and timestamp is not swallowed as well.
+     */
+    public boolean isSelfWrite(@NotNull String path, long length, long timestamp) {
+        if (consume(path, length, timestamp)) {
+            return true;
+        }
+        synchronized (this) {
+            if (requestScope == null || !inScope(path, requestScope)) {
+                return false;
+            }
+            // Decided once the request has named its writes
+            held.put(path, new Write(length, timestamp, System.currentTimeMillis()));
+            return true;
+        }
+    }
+
+    /**
+     * Starts holding content changes of the given absolute paths, and of
+     * everything below them, until {@link #endRequest()}.
+     */
+    public synchronized void beginRequest(@NotNull Collection<String> paths) {
+        requestScope = List.copyOf(paths);
+        held.clear();
+    }
+
+    /**
+     * Stops holding changes. Call after the request's writes were recorded;
+     * held changes that match none of them go to the release listener.
+     */
+    public void endRequest() {
+        List<String> released = new ArrayList<>();
+        synchronized (this) {
+            requestScope = null;
+            held.forEach((path, change) -> {
+                if (!consume(path, change.length, change.timestamp)) {
+                    released.add(path);
+                }
+            });
+            held.clear();
+        }
+        if (!released.isEmpty()) {
+            releaseListener.accept(released);
+        }
+    }
+
+    /**
+     * Receives the paths of held changes that turned out to be edits.
+     */
+    public void setReleaseListener(@NotNull Consumer<Collection<String>> releaseListener) {
+        this.releaseListener = releaseListener;
+    }
+
+    private boolean consume(@NotNull String path, long length, long timestamp) {
+        Write write = writes.get(path);
+        if (write == null || System.currentTimeMillis() - write.recordedAt > EXPIRY_MS) {
+            return false;
+        }
+        return write.length == length && write.timestamp == timestamp && writes.remove(path, write);
+    }
+
+    private static boolean inScope(@NotNull String path, @NotNull List<String> scope) {
+        for (String root : scope) {
+            if (path.equals(root) || path.startsWith(root) && path.charAt(root.length()) == '/') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Write {
+        final long length;
+        final long timestamp;
+        final long recordedAt;
+
+        Write(long length, long timestamp, long recordedAt) {
+            this.length = length;
+            this.timestamp = timestamp;
+            this.recordedAt = recordedAt;
+        }
+    }
+}
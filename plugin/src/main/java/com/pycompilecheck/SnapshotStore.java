@@ -0,0 +1,256 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate-compressed copies of each file's content as of its last analysis,
+ * used to work out which lines changed since then.
+ *
+ * <p>Entries live in an access-ordered map and the least recently used ones
+ * are evicted once the compressed total exceeds the byte budget. The same
+ * entries are saved to .pycompilecheck/snapshots.bin, oldest first, so disk
+ * use has the same bound and recency survives a restart.</p>
+ */
+public class SnapshotStore {
+
+    static final String SNAPSHOTS_FILE = "snapshots.bin";
+    static final long DEFAULT_BUDGET_BYTES = 32L * 1024 * 1024;
+    /** Larger files aren't kept; their changes are reported for the whole file. */
+    static final int MAX_FILE_SIZE = 1024 * 1024;
+
+    private static final int MAGIC = 0x5043435a; // "PCCZ"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final long budgetBytes;
+    // Each value is the uncompressed length as 4 bytes followed by the deflated content
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private boolean dirty;
+
+    private SnapshotStore(@NotNull Path file, long budgetBytes) {
+        this.file = file;
+        this.budgetBytes = budgetBytes;
+    }
+
+    public static @NotNull SnapshotStore open(@NotNull Path projectRoot) {
+        return open(projectRoot, DEFAULT_BUDGET_BYTES);
+    }
+
+    /**
+     * Opens the snapshots saved for a project. A missing or unreadable file
+     * just starts an empty store, since snapshots can always be rebuilt.
+     */
+    public static @NotNull SnapshotStore open(@NotNull Path projectRoot, long budgetBytes) {
+        SnapshotStore store = new SnapshotStore(
+            projectRoot.resolve(MetadataStore.METADATA_DIR).resolve(SNAPSHOTS_FILE), budgetBytes);
+        try {
+            store.load();
+        } catch (IOException e) {
+            store.entries.clear();
+            store.totalBytes = 0;
+        }
+        return store;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Compressed size of all entries.
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized boolean contains(@NotNull String relPath) {
+        return entries.containsKey(relPath);
+    }
+
+    /**
+     * Returns the stored content of a file, or null if there is none.
+     */
+    public synchronized byte @Nullable [] get(@NotNull String relPath) {
+        byte[] entry = entries.get(relPath);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return inflate(entry);
+        } catch (DataFormatException e) {
+            remove(relPath);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the content of a file, evicting the least recently used entries
+     * if the budget is exceeded. Content over {@link #MAX_FILE_SIZE} only
+     * drops the old entry.
+     */
+    public synchronized void put(@NotNull String relPath, byte @NotNull [] content) {
+        remove(relPath);
+        if (content.length > MAX_FILE_SIZE) {
+            return;
+        }
+
+        byte[] entry = deflate(content);
+        entries.put(relPath, entry);
+        totalBytes += entry.length;
+        dirty = true;
+
+        Iterator<Map.Entry<String, byte[]>> eldest = entries.entrySet().iterator();
+        while (totalBytes > budgetBytes && eldest.hasNext()) {
+            Map.Entry<String, byte[]> evicted = eldest.next();
+            totalBytes -= evicted.getValue().length;
+            eldest.remove();
+        }
+    }
+
+    public synchronized boolean remove(@NotNull String relPath) {
+        byte[] entry = entries.remove(relPath);
+        if (entry == null) {
+            return false;
+        }
+        totalBytes -= entry.length;
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Removes the entry for relPath and every entry below it.
+     */
+    public synchronized void removeTree(@NotNull String relPath, @NotNull String separator) {
+        remove(relPath);
+        String prefix = relPath + separator;
+        List<String> below = new ArrayList<>();
+        for (String path : entries.keySet()) {
+            if (path.startsWith(prefix)) {
+                below.add(path);
+            }
+        }
+        below.forEach(this::remove);
+    }
+
+    public synchronized void clear() {
+        if (!entries.isEmpty()) {
+            entries.clear();
+            totalBytes = 0;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the entries to snapshots.bin if anything changed since the last save.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(SNAPSHOTS_FILE + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            // Iteration order is least recently used first, which load() replays
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported snapshot file: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String relPath = in.readUTF();
+                byte[] entry = new byte[in.readInt()];
+                in.readFully(entry);
+                entries.put(relPath, entry);
+                totalBytes += entry.length;
+            }
+        }
+
+        // The budget may have shrunk since the file was written
+        Iterator<Map.Entry<String, byte[]>> eldest = entries.entrySet().iterator();
+        while (totalBytes > budgetBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().getValue().length;
+            eldest.remove();
+            dirty = true;
+        }
+    }
+
+    private static byte @NotNull [] deflate(byte @NotNull [] content) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 16);
+            out.write(content.length >>> 24);
+            out.write(content.length >>> 16);
+            out.write(content.length >>> 8);
+            out.write(content.length);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte @NotNull [] inflate(byte @NotNull [] entry) throws DataFormatException {
+        int length = ((entry[0] & 0xff) << 24) | ((entry[1] & 0xff) << 16)
+            | ((entry[2] & 0xff) << 8) | (entry[3] & 0xff);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(entry, 4, entry.length - 4);
+            byte[] content = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = inflater.inflate(content, read, length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new DataFormatException("Truncated snapshot");
+                }
+                read += n;
+            }
+            return content;
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.pycompilecheck;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiNameIdentifierOwner;
+import com.intellij.psi.PsiWhiteSpace;
+import com.jetbrains.python.psi.PyAnnotation;
+import com.jetbrains.python.psi.PyArgumentList;
+import com.jetbrains.python.psi.PyClass;
+import com.jetbrains.python.psi.PyDecoratorList;
+import com.jetbrains.python.psi.PyFile;
+import com.jetbrains.python.psi.PyFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fingerprints the functions and classes of Python files from their PSI,
+ * so changed signatures can be reported per symbol instead of per file.
+ *
+ * <p>Top-level functions, classes, methods and nested classes each get a
+ * signature hash (decorators, parameters, return annotation, base classes)
+ * and a body hash, both over tokens so formatting and comment edits don't
+ * count. Files whose PSI modification stamp didn't move since they were last
+ * fingerprinted are skipped without touching their PSI.</p>
+ */
+public class StructureIndexer {
+
+    private static final Logger LOG = Logger.getInstance(StructureIndexer.class);
+    private static final int MAX_SIGNATURE_LENGTH = 1000;
+
+    private final Project project;
+    private final String basePath;
+    private final StructureStore store;
+    // Changed files a cancelled annotate() left for the next one, by absolute path
+    private final Set<String> deferred = ConcurrentHashMap.newKeySet();
+
+    public StructureIndexer(@NotNull Project project, @NotNull String basePath) {
+        this.project = project;
+        this.basePath = basePath;
+        this.store = StructureStore.open(Paths.get(basePath));
+    }
+
+    /**
+     * Fingerprints a file that has no fingerprint yet, so its next change has
+     * a baseline. Files with unsaved edits are left alone, since the baseline
+     * has to match what the analysis sees on disk. Requires a read action.
+     */
+    public void seed(@NotNull PyFile file) {
+        VirtualFile virtualFile = file.getVirtualFile();
+        String relPath = virtualFile != null ? relativize(virtualFile.getPath()) : null;
+        if (relPath == null || store.get(relPath) != null
+            || FileDocumentManager.getInstance().isFileModified(virtualFile)) {
+            return;
+        }
+        store.put(relPath, fingerprint(file, virtualFile));
+    }
+
+    /**
+     * Fingerprints the file again and returns what changed since it was last
+     * fingerprinted. Requires a read action.
+     */
+    public @NotNull List<SymbolChange> reindex(@NotNull PyFile file) {
+        VirtualFile virtualFile = file.getVirtualFile();
+        String relPath = virtualFile != null ? relativize(virtualFile.getPath()) : null;
+        if (relPath == null) {
+            return Collections.emptyList();
+        }
+
+        FileStructure previous = store.get(relPath);
+        if (previous != null && isUpToDate(previous, file, virtualFile)) {
+            return Collections.emptyList();
+        }
+
+        FileStructure current = fingerprint(file, virtualFile);
+        store.put(relPath, current);
+        return current.changesSince(previous);
+    }
+
+    /**
+     * Attaches symbol changes to every file with content changes in the
+     * result. Called from the analysis thread.
+     *
+     * <p>Once the run is cancelled the remaining files are not parsed; the
+     * result is still worth publishing, so they are fingerprinted first
+     * by the next call instead.</p>
+     *
+     * @return absolute paths of the changed files whose public surface
+     *         changed. Files without an earlier fingerprint only get their
+     *         first one, as most changed files were never opened, and are
+     *         not counted.
+     */
+    public @NotNull Set<String> annotate(@NotNull PyCompileCheckResult result,
+                                         @NotNull AnalysisScheduler.Cancellation cancellation) {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        Set<String> surfaceChanged = new HashSet<>();
+        Set<String> paths = new LinkedHashSet<>(deferred);
+        deferred.removeAll(paths);
+        for (String path : result.getReportedFiles()) {
+            if (result.hasContentChanges(path)) {
+                paths.add(path);
+            }
+        }
+        
+        for (String path : paths) {
+            if (cancellation.isCancelled()) {
+                deferred.add(path);
+                continue;
+            }
+            String relPath = relativize(path);
+            if (relPath == null) {
+                continue;
+            }
+            FileStructure before = store.get(relPath);
+            
+            List<SymbolChange> changes = ApplicationManager.getApplication().runReadAction(
+                (Computable<List<SymbolChange>>) () -> {
+                    if (project.isDisposed()) {
+                        return Collections.emptyList();
+                    }
+                    VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+                    PsiFile psiFile = file != null && file.isValid() ? psiManager.findFile(file) : null;
+                    if (!(psiFile instanceof PyFile)) {
+                        store.remove(relPath);
+                        return Collections.emptyList();
+                    }
+                    return reindex((PyFile) psiFile);
+                });
+            if (!changes.isEmpty() && result.hasContentChanges(path)) {
+                result.setSymbolChanges(path, changes);
+            }
+            
+            FileStructure after = store.get(relPath);
+            if (before != null && (after == null || before.getSurfaceHash() != after.getSurfaceHash())) {
+                surfaceChanged.add(path);
+            }
+        }
+        return surfaceChanged;
+    }
+
+    /**
+     * Fingerprint last stored for a file, or null if it has none.
+     */
+    public @Nullable FileStructure getStructure(@NotNull String filePath) {
+        String relPath = relativize(filePath);
+        return relPath != null ? store.get(relPath) : null;
+    }
+
+    public void save() {
+        try {
+            store.save();
+        } catch (IOException e) {
+            LOG.warn("Failed to save PyCompileCheck structure fingerprints: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the functions and classes of a file by qualified name, in
+     * source order. Requires a read action.
+     */
+    public static @NotNull Map<String, PsiNameIdentifierOwner> findSymbols(@NotNull PyFile file) {
+        Map<String, PsiNameIdentifierOwner> symbols = new LinkedHashMap<>();
+        for (PyFunction function : file.getTopLevelFunctions()) {
+            addSymbol(symbols, "", function);
+        }
+        for (PyClass pyClass : file.getTopLevelClasses()) {
+            addClass(symbols, "", pyClass);
+        }
+        return symbols;
+    }
+
+    private static void addClass(@NotNull Map<String, PsiNameIdentifierOwner> symbols,
+                                 @NotNull String prefix, @NotNull PyClass pyClass) {
+        String name = addSymbol(symbols, prefix, pyClass);
+        if (name == null) {
+            return;
+        }
+        for (PyFunction method : pyClass.getMethods()) {
+            addSymbol(symbols, name + ".", method);
+        }
+        for (PyClass nested : pyClass.getNestedClasses()) {
+            addClass(symbols, name + ".", nested);
+        }
+    }
+
+    private static @Nullable String addSymbol(@NotNull Map<String, PsiNameIdentifierOwner> symbols,
+                                              @NotNull String prefix, @NotNull PsiNameIdentifierOwner owner) {
+        if (owner.getName() == null) {
+            // Incomplete code, e.g. "def" typed without a name yet
+            return null;
+        }
+        String name = prefix + owner.getName();
+        // Like Python, a later definition with the same name replaces the earlier one
+        symbols.remove(name);
+        symbols.put(name, owner);
+        return name;
+    }
+
+    private boolean isUpToDate(@NotNull FileStructure structure, @NotNull PyFile file, @NotNull VirtualFile virtualFile) {
+        if (structure.getPsiStamp() >= 0) {
+            return structure.getPsiStamp() == file.getModificationStamp();
+        }
+        // Loaded from disk: trust it while the file on disk is the same
+        if (structure.getFileStamp() == virtualFile.getTimeStamp()
+            && structure.getLength() == virtualFile.getLength()
+            && !FileDocumentManager.getInstance().isFileModified(virtualFile)) {
+            structure.setPsiStamp(file.getModificationStamp());
+            return true;
+        }
+        return false;
+    }
+
+    private static @NotNull FileStructure fingerprint(@NotNull PyFile file, @NotNull VirtualFile virtualFile) {
+        List<SymbolFingerprint> fingerprints = new ArrayList<>();
+        for (Map.Entry<String, PsiNameIdentifierOwner> entry : findSymbols(file).entrySet()) {
+            PsiNameIdentifierOwner owner = entry.getValue();
+            if (owner instanceof PyFunction) {
+                fingerprints.add(fingerprintFunction(entry.getKey(), (PyFunction) owner));
+            } else if (owner instanceof PyClass) {
+                fingerprints.add(fingerprintClass(entry.getKey(), (PyClass) owner));
+            }
+        }
+
+        FileStructure structure = new FileStructure(virtualFile.getTimeStamp(), virtualFile.getLength(), fingerprints);
+        structure.setPsiStamp(file.getModificationStamp());
+        return structure;
+    }
+
+    private static @NotNull SymbolFingerprint fingerprintFunction(@NotNull String name, @NotNull PyFunction function) {
+        PyDecoratorList decorators = function.getDecoratorList();
+        PyAnnotation annotation = function.getAnnotation();
+
+        long signatureHash = SymbolFingerprint.initialHash();
+        signatureHash = SymbolFingerprint.hash(signatureHash, function.isAsync() ? "async def" : "def");
+        signatureHash = hashTokens(signatureHash, decorators);
+        signatureHash = hashTokens(signatureHash, function.getParameterList());
+        signatureHash = hashTokens(signatureHash, annotation);
+
+        StringBuilder signature = new StringBuilder();
+        if (function.isAsync()) {
+            signature.append("async ");
+        }
+        signature.append("def ").append(function.getName()).append(compact(function.getParameterList()));
+        if (annotation != null) {
+            signature.append(' ').append(compact(annotation));
+        }
+
+        long bodyHash = hashTokens(SymbolFingerprint.initialHash(), function.getStatementList());
+        return new SymbolFingerprint(name, SymbolFingerprint.Kind.FUNCTION, truncate(signature), signatureHash, bodyHash);
+    }
+
+    private static @NotNull SymbolFingerprint fingerprintClass(@NotNull String name, @NotNull PyClass pyClass) {
+        PyArgumentList bases = pyClass.getSuperClassExpressionList();
+
+        long signatureHash = SymbolFingerprint.initialHash();
+        signatureHash = SymbolFingerprint.hash(signatureHash, "class");
+        signatureHash = hashTokens(signatureHash, pyClass.getDecoratorList());
+        signatureHash = hashTokens(signatureHash, bases);
+
+        String signature = "class " + pyClass.getName() + (bases != null ? compact(bases) : "");
+
+        // Methods and nested classes have fingerprints of their own
+        long bodyHash = SymbolFingerprint.initialHash();
+        for (PsiElement child = pyClass.getStatementList().getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof PyFunction || child instanceof PyClass) {
+                bodyHash = SymbolFingerprint.hash(bodyHash, String.valueOf(((PsiNameIdentifierOwner) child).getName()));
+            } else {
+                bodyHash = hashTokens(bodyHash, child);
+            }
+        }
+        return new SymbolFingerprint(name, SymbolFingerprint.Kind.CLASS, truncate(signature), signatureHash, bodyHash);
+    }
+
+    /**
+     * Hashes the leaf tokens under an element, skipping whitespace and comments.
+     */
+    private static long hashTokens(long hash, @Nullable PsiElement element) {
+        if (element == null || element instanceof PsiWhiteSpace || element instanceof PsiComment) {
+            return hash;
+        }
+        PsiElement child = element.getFirstChild();
+        if (child == null) {
+            return SymbolFingerprint.hash(hash, element.getText());
+        }
+        for (; child != null; child = child.getNextSibling()) {
+            hash = hashTokens(hash, child);
+        }
+        return hash;
+    }
+
+    private static @NotNull String compact(@NotNull PsiElement element) {
+        return element.getText().replaceAll("\\s+", " ");
+    }
+
+    private static @NotNull String truncate(@NotNull CharSequence signature) {
+        return signature.length() > MAX_SIGNATURE_LENGTH
+            ? signature.subSequence(0, MAX_SIGNATURE_LENGTH) + "..."
+            : signature.toString();
+    }
+
+    private @Nullable String relativize(@NotNull String path) {
+        if (!path.startsWith(basePath) || path.length() <= basePath.length()
+            || path.charAt(basePath.length()) != '/') {
+            return null;
+        }
+        return path.substring(basePath.length() + 1);
+    }
+}
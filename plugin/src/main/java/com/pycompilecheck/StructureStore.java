@@ -0,0 +1,135 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists {@link FileStructure} fingerprints per file in
+ * .pycompilecheck/structure.bin, so they survive restarts.
+ */
+public class StructureStore {
+
+    static final String STRUCTURE_FILE = "structure.bin";
+
+    private static final int MAGIC = 0x50434346; // "PCCF"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Map<String, FileStructure> structures = new HashMap<>();
+    private boolean dirty;
+
+    private StructureStore(@NotNull Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the fingerprints saved for a project. A missing or unreadable
+     * file just starts an empty store; fingerprints are rebuilt from PSI.
+     */
+    public static @NotNull StructureStore open(@NotNull Path projectRoot) {
+        StructureStore store = new StructureStore(
+            projectRoot.resolve(MetadataStore.METADATA_DIR).resolve(STRUCTURE_FILE));
+        try {
+            store.load();
+        } catch (IOException e) {
+            store.structures.clear();
+        }
+        return store;
+    }
+
+    public synchronized int size() {
+        return structures.size();
+    }
+
+    public synchronized @Nullable FileStructure get(@NotNull String relPath) {
+        return structures.get(relPath);
+    }
+
+    public synchronized void put(@NotNull String relPath, @NotNull FileStructure structure) {
+        structures.put(relPath, structure);
+        dirty = true;
+    }
+
+    public synchronized boolean remove(@NotNull String relPath) {
+        if (structures.remove(relPath) == null) {
+            return false;
+        }
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Writes the fingerprints to structure.bin if anything changed since the last save.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(STRUCTURE_FILE + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(structures.size());
+            for (Map.Entry<String, FileStructure> entry : structures.entrySet()) {
+                FileStructure structure = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(structure.getFileStamp());
+                out.writeLong(structure.getLength());
+                out.writeInt(structure.getSymbols().size());
+                for (SymbolFingerprint symbol : structure.getSymbols()) {
+                    out.writeUTF(symbol.getName());
+                    out.writeByte(symbol.getKind().ordinal());
+                    out.writeUTF(symbol.getSignature());
+                    out.writeLong(symbol.getSignatureHash());
+                    out.writeLong(symbol.getBodyHash());
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        SymbolFingerprint.Kind[] kinds = SymbolFingerprint.Kind.values();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported structure file: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String relPath = in.readUTF();
+                long fileStamp = in.readLong();
+                long length = in.readLong();
+                int symbolCount = in.readInt();
+                List<SymbolFingerprint> symbols = new ArrayList<>(symbolCount);
+                for (int j = 0; j < symbolCount; j++) {
+                    String name = in.readUTF();
+                    int kind = in.readByte();
+                    if (kind < 0 || kind >= kinds.length) {
+                        throw new IOException("Corrupt structure file: " + file);
+                    }
+                    symbols.add(new SymbolFingerprint(name, kinds[kind], in.readUTF(), in.readLong(), in.readLong()));
+                }
+                structures.put(relPath, new FileStructure(fileStamp, length, symbols));
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * A function or class that was added, removed or changed between two
+ * fingerprints of the same file.
+ */
+public class SymbolChange {
+
+    public enum Type { ADDED, REMOVED, SIGNATURE, BODY }
+
+    private final String name;
+    private final SymbolFingerprint.Kind kind;
+    private final Type type;
+    private final String signature;
+
+    public SymbolChange(@NotNull String name, @NotNull SymbolFingerprint.Kind kind,
+                        @NotNull Type type, @NotNull String signature) {
+        this.name = name;
+        this.kind = kind;
+        this.type = type;
+        this.signature = signature;
+    }
+
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public @NotNull SymbolFingerprint.Kind getKind() {
+        return kind;
+    }
+
+    public @NotNull Type getType() {
+        return type;
+    }
+
+    /**
+     * Current signature, or the last known one for removed symbols.
+     */
+    public @NotNull String getSignature() {
+        return signature;
+    }
+
+    public @NotNull String getDescription() {
+        String what = kind == SymbolFingerprint.Kind.CLASS ? "class" : "function";
+        switch (type) {
+            case ADDED:
+                return "Added " + what + " " + name;
+            case REMOVED:
+                return "Removed " + what + " " + name;
+            case SIGNATURE:
+                return "Signature changed: " + signature;
+            default:
+                return "Body changed: " + name;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SymbolChange)) {
+            return false;
+        }
+        SymbolChange other = (SymbolChange) o;
+        return name.equals(other.name) && kind == other.kind && type == other.type
+            && signature.equals(other.signature);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, kind, type, signature);
+    }
+}
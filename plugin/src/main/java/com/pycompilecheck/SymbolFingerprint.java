@@ -0,0 +1,93 @@
+package com.pycompilecheck;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Fingerprint of one function or class: its signature text plus hashes of
+ * the signature and body tokens, ignoring whitespace and comments.
+ */
+public class SymbolFingerprint {
+
+    public enum Kind { FUNCTION, CLASS }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String name;
+    private final Kind kind;
+    private final String signature;
+    private final long signatureHash;
+    private final long bodyHash;
+
+    public SymbolFingerprint(@NotNull String name, @NotNull Kind kind, @NotNull String signature,
+                             long signatureHash, long bodyHash) {
+        this.name = name;
+        this.kind = kind;
+        this.signature = signature;
+        this.signatureHash = signatureHash;
+        this.bodyHash = bodyHash;
+    }
+
+    /**
+     * Name qualified within the file, e.g. "Order.save" for a method.
+     */
+    public @NotNull String getName() {
+        return name;
+    }
+
+    public @NotNull Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Signature as written, e.g. "def save(self, commit=True) -> None".
+     */
+    public @NotNull String getSignature() {
+        return signature;
+    }
+
+    public long getSignatureHash() {
+        return signatureHash;
+    }
+
+    public long getBodyHash() {
+        return bodyHash;
+    }
+
+    /**
+     * True if other modules can use this symbol: no part of its name is
+     * private, though dunder methods like __init__ count as public.
+     */
+    public boolean isPublic() {
+        for (String part : name.split("\\.")) {
+            if (part.startsWith("_") && !(part.startsWith("__") && part.endsWith("__"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long initialHash() {
+        return FNV_OFFSET;
+    }
+
+    /**
+     * Folds text into a 64-bit FNV-1a hash.
+     */
+    public static long hash(long hash, @NotNull CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        // Separator, so "ab" + "c" and "a" + "bc" differ
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+
+    public static long hash(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ ((value >>> (i * 8)) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
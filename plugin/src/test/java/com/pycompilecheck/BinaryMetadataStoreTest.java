@@ -0,0 +1,202 @@
+package com.pycompilecheck;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryMetadataStoreTest {
+
+    private static final String SHA = "ab".repeat(32);
+    private static final String MURMUR = "0f".repeat(16);
+    private static final String ANALYZED = "2024-05-01T12:30:45.123456";
+
+    @TempDir
+    Path root;
+
+    @Test
+    void recordsSurviveReopening() throws IOException {
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            store.put("app/models.py", new FileMetadata(1714566645.25, 120, 42, SHA, FileMetadata.SHA256,
+                List.of("import os", "from app import views"), ANALYZED));
+            store.put("app/views.py", new FileMetadata(1714566646.5, 80, 43, MURMUR, FileMetadata.MURMUR3_128,
+                List.of(), ANALYZED));
+        }
+
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            assertEquals(2, store.size());
+
+            FileMetadata models = store.get("app/models.py");
+            assertNotNull(models);
+            assertEquals(1714566645.25, models.getLastModified());
+            assertEquals(120, models.getSize());
+            assertEquals(42, models.getInode());
+            assertEquals(SHA, models.getHash());
+            assertEquals(FileMetadata.SHA256, models.getHashAlgorithm());
+            assertEquals(List.of("import os", "from app import views"), models.getImports());
+            assertEquals(ANALYZED, models.getLastAnalyzed());
+
+            FileMetadata views = store.get("app/views.py");
+            assertNotNull(views);
+            assertEquals(MURMUR, views.getHash());
+            assertEquals(FileMetadata.MURMUR3_128, views.getHashAlgorithm());
+            assertEquals(List.of(), views.getImports());
+        }
+    }
+
+    @Test
+    void overwriteAndRemoveReuseSlots() throws IOException {
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            store.put("a.py", metadata(1, List.of("import os")));
+            store.put("b.py", metadata(2, List.of()));
+            store.put("a.py", metadata(3, List.of("import sys")));
+            assertTrue(store.remove("b.py"));
+            assertFalse(store.remove("b.py"));
+            store.put("c.py", metadata(4, List.of()));
+        }
+
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            assertEquals(Map.of("a.py", 3L, "c.py", 4L), sizes(store));
+            assertEquals(List.of("import sys"), store.get("a.py").getImports());
+            assertNull(store.get("b.py"));
+        }
+    }
+
+    @Test
+    void growsPastTheInitialSlots() throws IOException {
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            for (int i = 0; i < 3000; i++) {
+                store.put("pkg/module" + i + ".py", metadata(i, List.of("import m" + i)));
+            }
+        }
+
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            assertEquals(3000, store.size());
+            assertEquals(2999, store.get("pkg/module2999.py").getSize());
+            assertEquals(List.of("import m1500"), store.get("pkg/module1500.py").getImports());
+        }
+    }
+
+    @Test
+    void unknownHashAlgorithmIsDropped() throws IOException {
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            store.put("a.py", new FileMetadata(1, 1, 0, "ffff", "md5", List.of(), ANALYZED));
+            assertEquals("", store.get("a.py").getHash());
+        }
+    }
+
+    @Test
+    void corruptRecordsAreRebuilt() throws IOException {
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            store.put("a.py", metadata(1, List.of()));
+        }
+        Files.write(root.resolve(".pycompilecheck").resolve(BinaryMetadataStore.RECORDS_FILE), new byte[] {1, 2, 3});
+
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            assertEquals(0, store.size());
+            store.put("b.py", metadata(2, List.of()));
+        }
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            assertEquals(Map.of("b.py", 2L), sizes(store));
+        }
+    }
+
+    @Test
+    void missingStringTableIsRebuilt() throws IOException {
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            store.put("a.py", metadata(1, List.of()));
+        }
+        Files.delete(root.resolve(".pycompilecheck").resolve(BinaryMetadataStore.STRINGS_FILE));
+
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    void foreignVersionIsRebuilt() throws IOException {
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            store.put("a.py", metadata(1, List.of()));
+        }
+        Path records = root.resolve(".pycompilecheck").resolve(BinaryMetadataStore.RECORDS_FILE);
+        byte[] bytes = Files.readAllBytes(records);
+        bytes[7] = 99;
+        Files.write(records, bytes);
+
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    void generationKeepsIncreasingAcrossRebuilds() throws IOException {
+        long before;
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            long first = store.nextGeneration();
+            before = store.nextGeneration();
+            assertTrue(before > first);
+        }
+        Files.write(root.resolve(".pycompilecheck").resolve(BinaryMetadataStore.RECORDS_FILE), new byte[] {1, 2, 3});
+
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            // Not back to 1; the result cache accepts equal generations
+            assertTrue(store.nextGeneration() >= before);
+        }
+    }
+
+    @Test
+    void jsonExportRoundTrips() throws IOException {
+        MetadataStore json = new MetadataStore(root);
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            store.put("a.py", new FileMetadata(1714566645.25, 120, 42, SHA, FileMetadata.SHA256,
+                List.of("import os"), ANALYZED));
+            store.exportJson(json);
+            // Our own export is not imported again
+            assertFalse(store.syncFromJson(json));
+        }
+
+        Map<String, FileMetadata> exported = json.load();
+        assertEquals(SHA, exported.get("a.py").getHash());
+        assertEquals(List.of("import os"), exported.get("a.py").getImports());
+    }
+
+    @Test
+    void jsonWrittenBySomeoneElseReplacesTheStore() throws IOException {
+        MetadataStore json = new MetadataStore(root);
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            store.put("a.py", metadata(1, List.of()));
+            store.exportJson(json);
+        }
+
+        json.save(Map.of("b.py", metadata(7, List.of("import json"))));
+        // The stamp is the file's mtime, which may not have moved within its resolution
+        json.getMetadataFile().toFile().setLastModified(System.currentTimeMillis() + 5_000);
+
+        try (BinaryMetadataStore store = BinaryMetadataStore.open(root)) {
+            assertTrue(store.syncFromJson(json));
+            assertEquals(Map.of("b.py", 7L), sizes(store));
+            assertEquals(List.of("import json"), store.get("b.py").getImports());
+        }
+    }
+
+    private static FileMetadata metadata(long size, List<String> imports) {
+        return new FileMetadata(1714566645.0 + size, size, size, MURMUR, FileMetadata.MURMUR3_128, imports, ANALYZED);
+    }
+
+    private static Map<String, Long> sizes(BinaryMetadataStore store) {
+        Map<String, Long> sizes = new TreeMap<>();
+        store.toMap().forEach((path, entry) -> sizes.put(path, entry.getSize()));
+        return sizes;
+    }
+}
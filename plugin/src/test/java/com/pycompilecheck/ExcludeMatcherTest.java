@@ -0,0 +1,186 @@
+package com.pycompilecheck;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExcludeMatcherTest {
+
+    /**
+     * Glob, regex pairs. main.py's _glob_to_regex must produce the same
+     * regex for every glob, or the two engines see different files.
+     */
+    static final String[][] GLOB_TO_REGEX = {
+        {"*.py", "[^/]*\\.py"},
+        {"?.py", "[^/]\\.py"},
+        {"a**b", "a[^/]*[^/]*b"},
+        {"**/build", "(?:.*/)?build"},
+        {"docs/**", "docs/.*"},
+        {"src/**/gen.py", "src/(?:.*/)?gen\\.py"},
+        {"[abc].py", "[abc]\\.py"},
+        {"[!0-9]x", "[^/0-9]x"},
+        {"[^0-9]x", "[^/0-9]x"},
+        {"[]x]", "[\\]x]"},
+        {"[!]x]", "[^/\\]x]"},
+        {"[[&]", "[\\[\\&]"},
+        {"[abc", "\\[abc"},
+        {"\\*.py", "\\*\\.py"},
+        {"space\\ ", "space "},
+        {"a+b(c){1}|d$.py", "a\\+b\\(c\\)\\{1\\}\\|d\\$\\.py"},
+    };
+
+    @TempDir
+    Path root;
+
+    @Test
+    void globsTranslateLikeMainPy() {
+        for (String[] row : GLOB_TO_REGEX) {
+            assertEquals(row[1], ExcludeMatcher.Rule.toRegex(row[0]), row[0]);
+            // Must compile in both dialects; java.util.regex is the stricter one
+            Pattern.compile(row[1]);
+        }
+    }
+
+    @Test
+    void defaultsPruneToolingDirectories() {
+        ExcludeMatcher matcher = load();
+
+        assertTrue(matcher.isExcluded(".venv", true));
+        assertTrue(matcher.isExcluded("web/node_modules", true));
+        assertTrue(matcher.isExcluded("pkg/__pycache__", true));
+        assertTrue(matcher.isExcluded("mylib.egg-info", true));
+        assertTrue(matcher.isExcluded(".pycompilecheck", true));
+        // Directory rules leave files of the same name alone
+        assertFalse(matcher.isExcluded("build", false));
+        assertFalse(matcher.isExcluded("pkg/module.py", false));
+    }
+
+    @Test
+    void lastMatchingRuleWins() throws IOException {
+        gitignore(root, "*.py", "!keep*.py", "keep_not.py");
+        ExcludeMatcher matcher = load();
+
+        assertTrue(matcher.isExcluded("app.py", false));
+        assertFalse(matcher.isExcluded("keep.py", false));
+        assertFalse(matcher.isExcluded("pkg/keep_me.py", false));
+        assertTrue(matcher.isExcluded("keep_not.py", false));
+    }
+
+    @Test
+    void ignoreFileAndExtraPatternsOverrideGitignore() throws IOException {
+        gitignore(root, "generated/");
+        Files.writeString(root.resolve(ExcludeMatcher.IGNORE_FILE), "!build/\n");
+        ExcludeMatcher matcher = ExcludeMatcher.load(root, List.of("!generated/", "scratch.py"), List.of());
+
+        assertFalse(matcher.isExcluded("build", true));
+        assertFalse(matcher.isExcluded("generated", true));
+        assertTrue(matcher.isExcluded("tools/scratch.py", false));
+    }
+
+    @Test
+    void slashesAnchorPatterns() throws IOException {
+        gitignore(root, "/gen", "docs/tmp", "cache");
+        ExcludeMatcher matcher = load();
+
+        assertTrue(matcher.isExcluded("gen", true));
+        assertFalse(matcher.isExcluded("pkg/gen", true));
+        assertTrue(matcher.isExcluded("docs/tmp", true));
+        assertFalse(matcher.isExcluded("pkg/docs/tmp", true));
+        // No slash: the name at any depth
+        assertTrue(matcher.isExcluded("cache", true));
+        assertTrue(matcher.isExcluded("a/b/cache", false));
+    }
+
+    @Test
+    void doubleStarMatchesAnyDepth() throws IOException {
+        gitignore(root, "**/fixtures", "src/**/gen.py", "logs/**");
+        ExcludeMatcher matcher = load();
+
+        assertTrue(matcher.isExcluded("fixtures", true));
+        assertTrue(matcher.isExcluded("a/b/fixtures", true));
+        assertTrue(matcher.isExcluded("src/gen.py", false));
+        assertTrue(matcher.isExcluded("src/a/b/gen.py", false));
+        assertFalse(matcher.isExcluded("lib/src/gen.py", false));
+        assertTrue(matcher.isExcluded("logs/today.py", false));
+        assertFalse(matcher.isExcluded("logs", true));
+    }
+
+    @Test
+    void nestedGitignoreAppliesBelowItsDirectory() throws IOException {
+        Path pkg = Files.createDirectories(root.resolve("pkg"));
+        gitignore(pkg, "/local.py", "*_gen.py", "!keep_gen.py");
+        gitignore(root, "keep_gen.py");
+        ExcludeMatcher matcher = load().withGitignore(pkg, "pkg");
+
+        assertTrue(matcher.isExcluded("pkg/local.py", false));
+        assertFalse(matcher.isExcluded("pkg/sub/local.py", false));
+        assertTrue(matcher.isExcluded("pkg/sub/models_gen.py", false));
+        assertFalse(matcher.isExcluded("other/models_gen.py", false));
+        // The deeper file's negation comes later, so it wins for its own directory only
+        assertFalse(matcher.isExcluded("pkg/keep_gen.py", false));
+        assertTrue(matcher.isExcluded("other/keep_gen.py", false));
+    }
+
+    @Test
+    void escapesAndCommentsAreLiteral() throws IOException {
+        gitignore(root, "# comment.py", "\\#notes.py", "\\!important.py", "\\*.py");
+        ExcludeMatcher matcher = load();
+
+        assertFalse(matcher.isExcluded("# comment.py", false));
+        assertTrue(matcher.isExcluded("#notes.py", false));
+        assertTrue(matcher.isExcluded("!important.py", false));
+        assertTrue(matcher.isExcluded("*.py", false));
+        assertFalse(matcher.isExcluded("other.py", false));
+    }
+
+    @Test
+    void trailingSpacesAreDroppedUnlessEscaped() throws IOException {
+        gitignore(root, "trailing.py   ", "space\\ ", "   ");
+        ExcludeMatcher matcher = load();
+
+        assertTrue(matcher.isExcluded("trailing.py", false));
+        assertTrue(matcher.isExcluded("space ", false));
+        assertFalse(matcher.isExcluded("space", false));
+    }
+
+    @Test
+    void bracketClasses() throws IOException {
+        gitignore(root, "data[!0-9].py", "v[12].py", "a/x[!y]z");
+        ExcludeMatcher matcher = load();
+
+        assertTrue(matcher.isExcluded("dataX.py", false));
+        assertFalse(matcher.isExcluded("data1.py", false));
+        assertTrue(matcher.isExcluded("v2.py", false));
+        assertFalse(matcher.isExcluded("v3.py", false));
+        assertTrue(matcher.isExcluded("a/x_z", false));
+        // Not even a negated class matches the separator
+        assertFalse(matcher.isExcluded("a/x/z", false));
+    }
+
+    @Test
+    void excludedRootsArePrunedAsDirectories() {
+        ExcludeMatcher matcher = ExcludeMatcher.load(root, List.of(),
+            List.of(root.resolve("out"), root.resolve("..").resolve("elsewhere"), root));
+
+        assertTrue(matcher.isExcluded("out", true));
+        assertFalse(matcher.isExcluded("out", false));
+        assertFalse(matcher.isExcluded("src", true));
+    }
+
+    private ExcludeMatcher load() {
+        return ExcludeMatcher.load(root, List.of(), List.of());
+    }
+
+    private static void gitignore(Path dir, String... lines) throws IOException {
+        Files.writeString(dir.resolve(ExcludeMatcher.GITIGNORE), String.join("\n", lines) + "\n");
+    }
+}
@@ -0,0 +1,323 @@
+package com.pycompilecheck;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GitIndexTest {
+
+    private static final int REGULAR = 0100644;
+    private static final int SYMLINK = 0120000;
+    private static final int GITLINK = 0160000;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void readsVersion2() throws IOException {
+        new IndexFixture(2, 20)
+            .add("README.md", REGULAR, oid(20, 1))
+            .add("app/link.py", SYMLINK, oid(20, 2))
+            .add("app/models.py", REGULAR, 1714566645, 250_000_000, 4242, 120, oid(20, 3), 0, 0)
+            .add("app/sub", GITLINK, oid(20, 4))
+            .write(root);
+
+        GitIndex index = GitIndex.read(root);
+        assertNotNull(index);
+        assertEquals(2, index.getVersion());
+        assertEquals(Set.of("app/models.py"), index.getEntries().keySet());
+
+        GitIndex.Entry models = index.getEntries().get("app/models.py");
+        assertEquals(1714566645L, models.mtimeSeconds);
+        assertEquals(250_000_000, models.mtimeNanos);
+        assertEquals(4242, models.inode);
+        assertEquals(120, models.size);
+        assertArrayEquals(oid(20, 3), models.oid);
+        assertEquals("03".repeat(20), models.getOidHex());
+        assertFalse(models.intentToAdd);
+    }
+
+    @Test
+    void unmergedStagesAreLeftOut() throws IOException {
+        new IndexFixture(2, 20)
+            .add("conflict.py", REGULAR, 0, 0, 0, 0, oid(20, 1), 0x1000, 0)
+            .add("conflict.py", REGULAR, 0, 0, 0, 0, oid(20, 2), 0x2000, 0)
+            .add("conflict.py", REGULAR, 0, 0, 0, 0, oid(20, 3), 0x3000, 0)
+            .add("merged.py", REGULAR, oid(20, 4))
+            .write(root);
+
+        assertEquals(Set.of("merged.py"), GitIndex.read(root).getEntries().keySet());
+    }
+
+    @Test
+    void longPathsUseTheFullNameLength() throws IOException {
+        String path = "deep/" + "d".repeat(5000) + "/module.py";
+        new IndexFixture(2, 20)
+            .add(path, REGULAR, oid(20, 1))
+            .add("z.py", REGULAR, oid(20, 2))
+            .write(root);
+
+        assertEquals(Set.of(path, "z.py"), GitIndex.read(root).getEntries().keySet());
+    }
+
+    @Test
+    void readsExtendedFlagsOfVersion3() throws IOException {
+        new IndexFixture(3, 20)
+            .add("added.py", REGULAR, 0, 0, 0, 0, oid(20, 1), 0, 0x2000)
+            .add("sparse.py", REGULAR, 0, 0, 0, 0, oid(20, 2), 0, 0x4000)
+            .add("plain.py", REGULAR, oid(20, 3))
+            .write(root);
+
+        GitIndex index = GitIndex.read(root);
+        assertEquals(3, index.getVersion());
+        assertEquals(Set.of("added.py", "plain.py"), index.getEntries().keySet());
+        assertTrue(index.getEntries().get("added.py").intentToAdd);
+        assertFalse(index.getEntries().get("plain.py").intentToAdd);
+        assertArrayEquals(oid(20, 3), index.getEntries().get("plain.py").oid);
+    }
+
+    @Test
+    void extendedFlagsInVersion2AreRejected() throws IOException {
+        new IndexFixture(2, 20)
+            .add("added.py", REGULAR, 0, 0, 0, 0, oid(20, 1), 0, 0x2000)
+            .write(root);
+
+        assertThrows(IOException.class, () -> GitIndex.read(root));
+    }
+
+    @Test
+    void readsPrefixCompressedPathsOfVersion4() throws IOException {
+        String deep = "pkg/" + "x".repeat(300) + "/a.py";
+        new IndexFixture(4, 20)
+            .add("pkg/__init__.py", REGULAR, oid(20, 1))
+            .add("pkg/core.py", REGULAR, oid(20, 2))
+            .add("pkg/core/engine.py", REGULAR, oid(20, 3))
+            .add("pkg/notes.txt", REGULAR, oid(20, 4))
+            .add("pkg/util.py", REGULAR, oid(20, 5))
+            .add(deep, REGULAR, oid(20, 6))
+            // Drops more than 127 bytes, so the offset takes two bytes
+            .add("pkg/z.py", REGULAR, oid(20, 7))
+            .write(root);
+
+        GitIndex index = GitIndex.read(root);
+        assertEquals(4, index.getVersion());
+        Map<String, GitIndex.Entry> entries = index.getEntries();
+        assertEquals(Set.of("pkg/__init__.py", "pkg/core.py", "pkg/core/engine.py", "pkg/util.py", deep, "pkg/z.py"),
+            entries.keySet());
+        assertArrayEquals(oid(20, 3), entries.get("pkg/core/engine.py").oid);
+        assertArrayEquals(oid(20, 5), entries.get("pkg/util.py").oid);
+        assertArrayEquals(oid(20, 7), entries.get("pkg/z.py").oid);
+    }
+
+    @Test
+    void readsSha256ObjectIds() throws IOException {
+        Files.createDirectories(root.resolve(".git"));
+        Files.writeString(root.resolve(".git").resolve("config"),
+            "[core]\n\trepositoryformatversion = 1\n[extensions]\n\tobjectFormat = sha256\n");
+        new IndexFixture(4, 32)
+            .add("a.py", REGULAR, oid(32, 1))
+            .add("b.py", REGULAR, 0, 0, 0, 0, oid(32, 2), 0, 0x2000)
+            .write(root);
+
+        Map<String, GitIndex.Entry> entries = GitIndex.read(root).getEntries();
+        assertEquals(Set.of("a.py", "b.py"), entries.keySet());
+        assertEquals("01".repeat(32), entries.get("a.py").getOidHex());
+        assertTrue(entries.get("b.py").intentToAdd);
+    }
+
+    @Test
+    void pathsAreRelativeToAProjectInsideTheWorkTree() throws IOException {
+        new IndexFixture(2, 20)
+            .add("backend/app.py", REGULAR, oid(20, 1))
+            .add("backend/pkg/mod.py", REGULAR, oid(20, 2))
+            .add("backendtools/run.py", REGULAR, oid(20, 3))
+            .add("setup.py", REGULAR, oid(20, 4))
+            .write(root);
+        Path project = Files.createDirectories(root.resolve("backend"));
+
+        assertEquals(Set.of("app.py", "pkg/mod.py"), GitIndex.read(project).getEntries().keySet());
+    }
+
+    @Test
+    void linkedWorkTreesFollowTheirGitFile() throws IOException {
+        Path gitDir = Files.createDirectories(root.resolve("main.git").resolve("worktrees").resolve("feature"));
+        Files.writeString(gitDir.resolve("commondir"), "../..");
+        Files.writeString(root.resolve("main.git").resolve("config"), "[extensions]\n\tobjectformat = sha256\n");
+        Files.write(gitDir.resolve("index"), new IndexFixture(2, 32).add("a.py", REGULAR, oid(32, 1)).toBytes());
+        Path workTree = Files.createDirectories(root.resolve("feature"));
+        Files.writeString(workTree.resolve(".git"), "gitdir: ../main.git/worktrees/feature\n");
+
+        GitIndex index = GitIndex.read(workTree);
+        assertNotNull(index);
+        assertArrayEquals(oid(32, 1), index.getEntries().get("a.py").oid);
+    }
+
+    @Test
+    void missingIndexIsNoIndex() throws IOException {
+        Files.createDirectories(root.resolve(".git"));
+
+        assertNull(GitIndex.read(root));
+    }
+
+    @Test
+    void unsupportedOrTruncatedIndexesAreRejected() throws IOException {
+        new IndexFixture(5, 20).add("a.py", REGULAR, oid(20, 1)).write(root);
+        assertThrows(IOException.class, () -> GitIndex.read(root));
+
+        byte[] bytes = new IndexFixture(2, 20).add("a.py", REGULAR, oid(20, 1)).toBytes();
+        Files.write(root.resolve(".git").resolve("index"), Arrays.copyOf(bytes, 40));
+        assertThrows(IOException.class, () -> GitIndex.read(root));
+
+        bytes[0] = 'X';
+        Files.write(root.resolve(".git").resolve("index"), bytes);
+        assertThrows(IOException.class, () -> GitIndex.read(root));
+    }
+
+    @Test
+    void cleanOnlyWhileTheStatDataMatches() throws IOException {
+        Path file = Files.writeString(root.resolve("a.py"), "x = 1\n");
+        long mtime = Files.getLastModifiedTime(file).toInstant().getEpochSecond();
+        int nanos = Files.getLastModifiedTime(file).toInstant().getNano();
+        int inode = ((Number) Files.getAttribute(file, "unix:ino")).intValue();
+        new IndexFixture(2, 20).add("a.py", REGULAR, (int) mtime, nanos, inode, 6, oid(20, 1), 0, 0).write(root);
+        Path indexFile = root.resolve(".git").resolve("index");
+        Files.setLastModifiedTime(indexFile, FileTime.fromMillis((mtime + 10) * 1000));
+
+        GitIndex index = GitIndex.read(root);
+        GitIndex.Entry entry = index.getEntries().get("a.py");
+        assertTrue(index.isClean(entry, file));
+
+        // Same mtime, different size
+        Files.writeString(file, "x = 22\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.ofEpochSecond(mtime, nanos)));
+        assertFalse(index.isClean(entry, file));
+    }
+
+    @Test
+    void racilyCleanFilesAreNotClean() throws IOException {
+        Path file = Files.writeString(root.resolve("a.py"), "x = 1\n");
+        long mtime = Files.getLastModifiedTime(file).toInstant().getEpochSecond();
+        int inode = ((Number) Files.getAttribute(file, "unix:ino")).intValue();
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtime * 1000));
+        new IndexFixture(2, 20).add("a.py", REGULAR, (int) mtime, 0, inode, 6, oid(20, 1), 0, 0).write(root);
+        // Written in the same second as the file, so git can't tell a later edit from the indexed content
+        Files.setLastModifiedTime(root.resolve(".git").resolve("index"), FileTime.fromMillis(mtime * 1000));
+
+        GitIndex index = GitIndex.read(root);
+        assertFalse(index.isClean(index.getEntries().get("a.py"), file));
+    }
+
+    private static byte[] oid(int length, int fill) {
+        byte[] oid = new byte[length];
+        Arrays.fill(oid, (byte) fill);
+        return oid;
+    }
+
+    /**
+     * Writes index files the way git lays them out, without extensions; the
+     * trailing checksum is left zero since it isn't verified.
+     */
+    private static final class IndexFixture {
+
+        private final int version;
+        private final int oidLength;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count;
+        private byte[] previousPath = new byte[0];
+
+        IndexFixture(int version, int oidLength) {
+            this.version = version;
+            this.oidLength = oidLength;
+        }
+
+        IndexFixture add(String path, int mode, byte[] oid) throws IOException {
+            return add(path, mode, 0, 0, 0, 0, oid, 0, 0);
+        }
+
+        IndexFixture add(String path, int mode, int mtimeSeconds, int mtimeNanos, int inode, int size,
+                         byte[] oid, int stage, int extended) throws IOException {
+            byte[] name = path.getBytes(StandardCharsets.UTF_8);
+            int start = out.size();
+            out.writeInt(mtimeSeconds); // ctime
+            out.writeInt(mtimeNanos);
+            out.writeInt(mtimeSeconds);
+            out.writeInt(mtimeNanos);
+            out.writeInt(0x0801); // dev
+            out.writeInt(inode);
+            out.writeInt(mode);
+            out.writeInt(1000); // uid
+            out.writeInt(1000); // gid
+            out.writeInt(size);
+            out.write(oid);
+            out.writeShort((extended != 0 ? 0x4000 : 0) | stage | Math.min(name.length, 0x0FFF));
+            if (extended != 0) {
+                out.writeShort(extended);
+            }
+
+            if (version == 4) {
+                int common = 0;
+                while (common < name.length && common < previousPath.length && name[common] == previousPath[common]) {
+                    common++;
+                }
+                writeOffset(previousPath.length - common);
+                out.write(name, common, name.length - common);
+                out.write(0);
+                previousPath = name;
+            } else {
+                out.write(name);
+                int nameOffset = out.size() - start - name.length;
+                int padded = (nameOffset + name.length + 8) & ~7;
+                out.write(new byte[padded - nameOffset - name.length]);
+            }
+            count++;
+            return this;
+        }
+
+        byte[] toBytes() throws IOException {
+            ByteArrayOutputStream file = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(0x44495243); // "DIRC"
+            header.writeInt(version);
+            header.writeInt(count);
+            bytes.writeTo(file);
+            file.write(new byte[oidLength]);
+            return file.toByteArray();
+        }
+
+        void write(Path workTree) throws IOException {
+            Path gitDir = Files.createDirectories(workTree.resolve(".git"));
+            Files.write(gitDir.resolve("index"), toBytes());
+        }
+
+        /** git's encode_varint: big-endian base 128 where every continuation subtracts one. */
+        private void writeOffset(int value) throws IOException {
+            byte[] buffer = new byte[8];
+            int pos = buffer.length - 1;
+            buffer[pos] = (byte) (value & 0x7F);
+            while ((value >>>= 7) != 0) {
+                buffer[--pos] = (byte) (0x80 | (--value & 0x7F));
+            }
+            out.write(buffer, pos, buffer.length - pos);
+        }
+    }
+}
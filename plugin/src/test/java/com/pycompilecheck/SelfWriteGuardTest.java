@@ -0,0 +1,59 @@
+package com.pycompilecheck;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SelfWriteGuardTest {
+
+    @Test
+    void recordedWriteIsConsumedOnce() {
+        SelfWriteGuard guard = new SelfWriteGuard();
+        guard.record("/project/a.py", 10, 1000);
+
+        assertFalse(guard.isSelfWrite("/project/a.py", 11, 1000));
+        assertTrue(guard.isSelfWrite("/project/a.py", 10, 1000));
+        assertFalse(guard.isSelfWrite("/project/a.py", 10, 1000));
+    }
+
+    @Test
+    void writeSeenBeforeTheResponseIsDropped() {
+        SelfWriteGuard guard = new SelfWriteGuard();
+        List<String> released = new ArrayList<>();
+        guard.setReleaseListener(released::addAll);
+
+        guard.beginRequest(List.of("/project"));
+        assertTrue(guard.isSelfWrite("/project/pkg/a.py", 10, 1000));
+        guard.record("/project/pkg/a.py", 10, 1000);
+        guard.endRequest();
+
+        assertEquals(List.of(), released);
+        // The held event used up the record
+        assertFalse(guard.isSelfWrite("/project/pkg/a.py", 10, 1000));
+    }
+
+    @Test
+    void editsDuringARequestAreReleased() {
+        SelfWriteGuard guard = new SelfWriteGuard();
+        List<String> released = new ArrayList<>();
+        guard.setReleaseListener(released::addAll);
+
+        guard.beginRequest(List.of("/project/a.py", "/project/pkg"));
+        assertTrue(guard.isSelfWrite("/project/a.py", 12, 2000));
+        assertTrue(guard.isSelfWrite("/project/pkg/b.py", 5, 2000));
+        assertFalse(guard.isSelfWrite("/project/pkg2/c.py", 5, 2000));
+        assertFalse(guard.isSelfWrite("/project/a.pyc", 5, 2000));
+        guard.record("/project/a.py", 10, 1000);
+        guard.endRequest();
+
+        released.sort(null);
+        assertEquals(List.of("/project/a.py", "/project/pkg/b.py"), released);
+        // Not held any more
+        assertFalse(guard.isSelfWrite("/project/pkg/b.py", 6, 3000));
+    }
+}
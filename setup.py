@@ -15,6 +15,7 @@ setup(
         "safety>=2.0.0",
         "pyyaml>=6.0.0",
         "watchdog>=3.0.0",
+        "mmh3>=3.0.0",
     ],
     entry_points={
         "console_scripts": [